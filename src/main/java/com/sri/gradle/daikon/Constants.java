@@ -25,6 +25,30 @@ public class Constants {
       "Checks if Daikon is in your project's classpath.";
   public static final String DAIKON_TASK = "runDaikon";
   public static final String DAIKON_TASK_DESCRIPTION = "Runs Daikon invariant detector";
+  public static final String DYN_COMP_TASK = "runDynComp";
+  public static final String DYN_COMP_TASK_DESCRIPTION =
+      "Computes variable comparability information using DynComp.";
+  public static final String CHICORY_TASK = "runChicory";
+  public static final String CHICORY_TASK_DESCRIPTION =
+      "Traces the execution of the test driver using Chicory.";
+  public static final String INFER_INVARIANTS_TASK = "inferInvariants";
+  public static final String INFER_INVARIANTS_TASK_DESCRIPTION =
+      "Detects likely invariants in the Chicory trace using Daikon.";
+  public static final String CHICORY_ONLINE_TASK = "runChicoryOnline";
+  public static final String CHICORY_ONLINE_TASK_DESCRIPTION =
+      "Traces the test driver with Chicory and streams the trace into Daikon.";
+  public static final String BUILD_DYN_COMP_RT_TASK = "buildDynCompRuntime";
+  public static final String BUILD_DYN_COMP_RT_TASK_DESCRIPTION =
+      "Instruments the running JDK for DynComp and caches it in the Gradle user home.";
+  public static final String BUILD_CDS_ARCHIVE_TASK = "buildDaikonCdsArchive";
+  public static final String BUILD_CDS_ARCHIVE_TASK_DESCRIPTION =
+      "Archives the classes the Daikon tools load on startup, for faster startup of their JVMs.";
+  public static final String ACCUMULATE_INVARIANTS_TASK = "accumulateInvariants";
+  public static final String ACCUMULATE_INVARIANTS_TASK_DESCRIPTION =
+      "Merges the invariants of the latest run with those of earlier runs.";
+  public static final String PRINT_INVARIANTS_TASK = "printInvariants";
+  public static final String PRINT_INVARIANTS_TASK_DESCRIPTION =
+      "Prints the invariants detected by Daikon into a text file.";
   public static final String CODE_GEN_TASK = "generateTestDriverCode";
   public static final String CODE_GEN_TASK_DESCRIPTION =
       "Generates test driver code that Daikon can execute.";
@@ -48,12 +72,41 @@ public class Constants {
   public static final String DAIKON_MAIN_CLASS = "daikon.Daikon";
   public static final String DYN_COMP_MAIN_CLASS = "daikon.DynComp";
   public static final String PRINT_INVARIANTS_MAIN_CLASS = "daikon.PrintInvariants";
+  public static final String MERGE_INVARIANTS_MAIN_CLASS = "daikon.MergeInvariants";
+  public static final String BUILD_JDK_MAIN_CLASS = "daikon.dcomp.BuildJDK";
   public static final String CHICORY_JAR_FILE = "ChicoryPremain.jar";
   public static final String DAIKON_JAR_FILE = "daikon.jar";
   public static final String DYN_COMP_PRE_MAIN_JAR_FILE = "dcomp_premain.jar";
   public static final String DYN_COMP_RT_JAR_FILE = "dcomp_rt.jar";
+  public static final String DECLS_DYN_COMP_EXT = ".decls-DynComp";
+  public static final String DTRACE_EXT = ".dtrace.gz";
+  public static final String INV_EXT = ".inv.gz";
+  public static final String INV_TXT_EXT = ".inv.txt";
+  public static final String ACCUMULATED_INV_EXT = "-accumulated.inv.gz";
+  public static final String ONLINE_INV_EXT = "-online.inv.gz";
+  public static final String TEST_TRACES_DIR = "test-traces";
+  public static final String INCREMENTAL_DIR = "incremental";
+  public static final String INVARIANT_STORE_DIR = ".gradle/daikon/invariant-store";
+  public static final String DAIKON_WORKER_SERVICE = "daikonWorker";
+  public static final String DAIKON_WORKER_DIR = "daikon-worker";
+  public static final String MEMORY_BUDGET_SERVICE = "daikonMemoryBudget";
+  public static final String DIRECTORY_SCAN_SERVICE = "daikonDirectoryScans";
+  public static final String HEAP_HISTORY_DIR = ".gradle/daikon";
+  public static final String CLASS_INDEX_FILE = "tmp/daikon/class-index.txt";
+  public static final String LAUNCH_FILES_DIR = "tmp/daikon/launch";
+  // The test driver, when emitted as bytecode; kept out of the test classes directory
+  public static final String TEST_DRIVER_CLASSES_DIR = "daikon/driver-classes";
+  // Longer classpaths and argument lists go to files; Windows caps a command line at 32K chars
+  public static final int MAX_INLINE_LENGTH = 8192;
+  public static final String DYN_COMP_CACHE_DIR = "daikon-dyncomp";
+  public static final String DYN_COMP_RT_CACHE_DIR = "daikon-dcomp-rt";
+  public static final String CDS_ARCHIVE_CACHE_DIR = "daikon-cds";
+  public static final String CDS_ARCHIVE_FILE = "daikon.jsa";
   public static final String TEST_DRIVER = "TestDriver";
   public static final String TEST_DRIVER_CLASSNAME = "AutoGenerated" + TEST_DRIVER;
+  // By name only: loading it in Gradle's JVM would need JUnit
+  public static final String TEST_PROFILE_LISTENER =
+      "com.sri.gradle.daikon.internal.TestProfileListener";
 
   // Regular expression which matches expected names of JUnit test classes.
   // thx to https://github.com/sevntu-checkstyle/sevntu.checkstyle
@@ -1,23 +1,54 @@
 package com.sri.gradle.daikon;
 
+import com.google.common.collect.ImmutableList;
 import com.sri.gradle.daikon.extensions.CompileTestDriverJavaExtension;
 import com.sri.gradle.daikon.extensions.DaikonPluginExtension;
+import com.sri.gradle.daikon.extensions.InstrumentationScope;
+import com.sri.gradle.daikon.internal.ChicoryAgentArgumentProvider;
+import com.sri.gradle.daikon.internal.ClassIndex;
+import com.sri.gradle.daikon.internal.DaikonWorkerService;
+import com.sri.gradle.daikon.internal.DirectoryScanService;
+import com.sri.gradle.daikon.internal.ExecutionProfile;
+import com.sri.gradle.daikon.internal.IncrementalState;
+import com.sri.gradle.daikon.internal.MemoryBudgetService;
+import com.sri.gradle.daikon.internal.SelectPatterns;
+import com.sri.gradle.daikon.tasks.AbstractDaikonStage;
+import com.sri.gradle.daikon.tasks.AbstractChicoryStage;
+import com.sri.gradle.daikon.tasks.AccumulateInvariants;
 import com.sri.gradle.daikon.tasks.AbstractNamedTask;
+import com.sri.gradle.daikon.tasks.BuildCdsArchive;
+import com.sri.gradle.daikon.tasks.BuildDynCompRuntime;
 import com.sri.gradle.daikon.tasks.CheckForDaikon;
 import com.sri.gradle.daikon.tasks.CompileTestJavaTaskMutator;
 import com.sri.gradle.daikon.tasks.DaikonEvidence;
+import com.sri.gradle.daikon.tasks.InferInvariants;
+import com.sri.gradle.daikon.tasks.PrintInvariants;
+import com.sri.gradle.daikon.tasks.RunChicory;
+import com.sri.gradle.daikon.tasks.RunChicoryOnline;
 import com.sri.gradle.daikon.tasks.RunDaikon;
+import com.sri.gradle.daikon.tasks.RunDynComp;
 import com.sri.gradle.daikon.tasks.SourceGeneratingTask;
+import com.sri.gradle.daikon.utils.ClassFiles;
 import com.sri.gradle.daikon.utils.JavaProjectHelper;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import org.gradle.api.Action;
 import org.gradle.api.GradleException;
 import org.gradle.api.Plugin;
 import org.gradle.api.Project;
 import org.gradle.api.Task;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.FileCollection;
 import org.gradle.api.plugins.JavaBasePlugin;
 import org.gradle.api.plugins.JavaPlugin;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.compile.JavaCompile;
+import org.gradle.api.tasks.testing.Test;
 
 @SuppressWarnings({"NullableProblems", "Convert2Lambda", "unused"})
 public class DaikonPlugin implements Plugin<Project> {
@@ -34,16 +65,19 @@ public class DaikonPlugin implements Plugin<Project> {
             .getExtensions()
             .create(Constants.PLUGIN_EXTENSION, DaikonPluginExtension.class, project);
 
-    final CheckForDaikon checkDaikonInstallation = createCheckForDaikonTask(project);
+    // Doesn't depend on compilation, so the check can run while the project compiles
+    final CheckForDaikon checkDaikonInstallation = createCheckForDaikonTask(project, extension);
     final JavaCompile configuredJavaCompileTask = configureSourceGeneratingTask(project, extension);
-    checkDaikonInstallation.dependsOn(configuredJavaCompileTask);
 
-    final RunDaikon mainTask = createRunDaikonTask(project, extension);
-    mainTask.getOutputs().upToDateWhen(spec -> false);
     if (project.hasProperty(Constants.OWN_DRIVER)){
-      mainTask.dependsOn(JavaBasePlugin.BUILD_TASK_NAME, checkDaikonInstallation);
+      createRunDaikonTask(
+          project,
+          extension,
+          JavaBasePlugin.BUILD_TASK_NAME,
+          configuredJavaCompileTask,
+          checkDaikonInstallation);
     } else {
-      mainTask.dependsOn(checkDaikonInstallation);
+      createRunDaikonTask(project, extension, configuredJavaCompileTask, checkDaikonInstallation);
     }
 
     final DaikonEvidence daikonEvidence = createDaikonEvidenceTask(project, extension);
@@ -51,18 +85,537 @@ public class DaikonPlugin implements Plugin<Project> {
     project.getLogger().quiet("Applied Daikon Gradle plugin");
   }
 
-  private RunDaikon createRunDaikonTask(Project project, DaikonPluginExtension extension) {
+  private RunDaikon createRunDaikonTask(
+      Project project, DaikonPluginExtension extension, Object... dependencies) {
+    final JavaProjectHelper projectHelper = new JavaProjectHelper(project);
+    final Provider<DirectoryScanService> scans = registerDirectoryScans(project);
+
+    // jar files under the directory specified in the build.gradle's `requires` statement
+    final FileCollection daikonClasspath =
+        project.files(
+            extension
+                .getRequires()
+                .map(dir -> scans.get().findJavaJars(dir.getAsFile().toPath())));
+
+    // Holds the test driver when it's emitted as bytecode; see SourceGeneratingTask
+    final Provider<Directory> driverClassesDir =
+        projectHelper.getBuildDir().dir(Constants.TEST_DRIVER_CLASSES_DIR);
+    final FileCollection fullClasspath =
+        project.files(
+            daikonClasspath,
+            projectHelper.getBuildDir().dir(Constants.PROJECT_MAIN_CLASS_DIR),
+            projectHelper.getBuildDir().dir(Constants.PROJECT_TEST_CLASS_DIR),
+            driverClassesDir,
+            projectHelper.getTestSourceSet().getRuntimeClasspath());
+
+    // These are only resolved once the test classes have been compiled
+    final Provider<Directory> testClassesDir =
+        project.provider(
+            () -> {
+              final Directory dir =
+                  JavaProjectHelper.getTestDriverPackageClassesDir(
+                      extension.getTestDriverPackage(), projectHelper.getBuildTestDir());
+              if (dir == null) {
+                throw new GradleException("Unable to find the test driver directory");
+              }
+              return dir;
+            });
+
+    final Provider<List<String>> testClassNames =
+        testClassesDir.map(dir -> scans.get().getTestClassNames(dir.getAsFile().toPath()));
+
+    // Found by reading the class files, which is exact regardless of how the driver is named
+    final ClassIndex classIndex =
+        new ClassIndex(
+            projectHelper.getBuildDir().file(Constants.CLASS_INDEX_FILE).get().getAsFile().toPath());
+    final Provider<String> mainClass =
+        testClassesDir.map(
+            dir -> {
+              final Map<String, ClassFiles.Summary> classes =
+                  new HashMap<>(scans.get().summarizeClasses(dir.getAsFile().toPath(), classIndex));
+              final File driverDir = driverClassesDir.get().getAsFile();
+              if (driverDir.isDirectory()) {
+                classes.putAll(scans.get().summarizeClasses(driverDir.toPath(), classIndex));
+              }
+              return ClassIndex.findMainClass(classes)
+                  .orElseThrow(
+                      () ->
+                          new GradleException(
+                              "DynComp/Chicory operations require a non-null main class."));
+            });
+
+    // The code under test rather than the tests, unless configured otherwise
+    final Provider<List<String>> mainClassNames =
+        project.provider(
+            () -> {
+              final File mainClassesDir =
+                  projectHelper
+                      .getBuildDir()
+                      .dir(Constants.PROJECT_MAIN_CLASS_DIR)
+                      .get()
+                      .getAsFile();
+              if (!mainClassesDir.isDirectory()) {
+                return ImmutableList.<String>of();
+              }
+              return new ArrayList<>(
+                  scans.get().summarizeClasses(mainClassesDir.toPath(), classIndex).keySet());
+            });
+    final InstrumentationScope scope = extension.getInstrument();
+    final Provider<List<String>> selectPatterns =
+        mainClassNames.map(names -> SelectPatterns.select(scope.getIncludes().get(), names));
+    final Provider<List<String>> omitPatterns = scope.getExcludes().map(SelectPatterns::omit);
+    // Daikon's partitions are made of these
+    final Provider<List<String>> scopedClassNames =
+        project.provider(
+            () -> {
+              final List<String> candidates = new ArrayList<>(testClassNames.get());
+              mainClassNames.get().stream()
+                  .filter(name -> !name.contains("$") && !candidates.contains(name))
+                  .forEach(candidates::add);
+              final List<String> scoped =
+                  SelectPatterns.filter(candidates, selectPatterns.get(), omitPatterns.get());
+              return scoped.isEmpty() ? testClassNames.get() : scoped;
+            });
+
+    final RunDynComp dynComp =
+        createStageTask(
+            project,
+            Constants.DYN_COMP_TASK,
+            RunDynComp.class,
+            Constants.DYN_COMP_TASK_DESCRIPTION,
+            extension,
+            fullClasspath,
+            mainClass);
+    dynComp.getSelectedClasses().set(testClassNames);
+    dynComp.getSelectPatterns().set(selectPatterns);
+    dynComp.getOmitPatterns().set(omitPatterns);
+    dynComp.getForkOptions().set(extension.getDynComp());
+    dynComp.getToolOptions().set(extension.getProfile().map(ExecutionProfile::dynCompOptions));
+    dynComp.getTestClassesDir().set(testClassesDir);
+
+    final BuildDynCompRuntime dynCompRuntime =
+        createCustomPluginTask(project, Constants.BUILD_DYN_COMP_RT_TASK, BuildDynCompRuntime.class);
+    dynCompRuntime.setDescription(Constants.BUILD_DYN_COMP_RT_TASK_DESCRIPTION);
+    dynCompRuntime.getClasspath().from(daikonClasspath);
+    dynCompRuntime.getDaikonJar().set(extension.getRequires().file(Constants.DAIKON_JAR_FILE));
+    dynCompRuntime
+        .getCacheDir()
+        .set(new File(project.getGradle().getGradleUserHomeDir(), Constants.DYN_COMP_RT_CACHE_DIR));
+    dynCompRuntime.getForkOptions().set(extension.getDynComp());
+
+    final BuildCdsArchive cdsArchive =
+        createCustomPluginTask(project, Constants.BUILD_CDS_ARCHIVE_TASK, BuildCdsArchive.class);
+    cdsArchive.setDescription(Constants.BUILD_CDS_ARCHIVE_TASK_DESCRIPTION);
+    cdsArchive.getDaikonJar().set(extension.getRequires().file(Constants.DAIKON_JAR_FILE));
+    cdsArchive
+        .getCacheDir()
+        .set(new File(project.getGradle().getGradleUserHomeDir(), Constants.CDS_ARCHIVE_CACHE_DIR));
+    dynComp
+        .getProjectClassesDirs()
+        .from(
+            projectHelper.getBuildDir().dir(Constants.PROJECT_MAIN_CLASS_DIR),
+            projectHelper.getBuildDir().dir(Constants.PROJECT_TEST_CLASS_DIR),
+            driverClassesDir);
+    dynComp.dependsOn(dependencies);
+
+    final RunChicory chicory =
+        createStageTask(
+            project,
+            Constants.CHICORY_TASK,
+            RunChicory.class,
+            Constants.CHICORY_TASK_DESCRIPTION,
+            extension,
+            fullClasspath,
+            mainClass);
+    final RunChicoryOnline chicoryOnline =
+        createStageTask(
+            project,
+            Constants.CHICORY_ONLINE_TASK,
+            RunChicoryOnline.class,
+            Constants.CHICORY_ONLINE_TASK_DESCRIPTION,
+            extension,
+            fullClasspath,
+            mainClass);
+    for (AbstractChicoryStage each : ImmutableList.of(chicory, chicoryOnline)) {
+      each.getSelectedClasses().set(testClassNames);
+      each.getSelectPatterns().set(selectPatterns);
+      each.getOmitPatterns().set(omitPatterns);
+      each.getForkOptions().set(extension.getChicory());
+      each.getToolOptions().set(extension.getProfile().map(ExecutionProfile::chicoryOptions));
+      each.getComparabilityFile().set(dynComp.getDeclsFile());
+      each.dependsOn(dynComp);
+    }
+    // Lets the test driver report what each test costs to trace; see TestProfileListener
+    final File pluginLocation = ChicoryAgentArgumentProvider.getPluginLocation();
+    if (pluginLocation != null) {
+      chicory.getClasspath().from(pluginLocation);
+    }
+
+    final InferInvariants inferInvariants =
+        createStageTask(
+            project,
+            Constants.INFER_INVARIANTS_TASK,
+            InferInvariants.class,
+            Constants.INFER_INVARIANTS_TASK_DESCRIPTION,
+            extension,
+            daikonClasspath,
+            mainClass);
+    inferInvariants.getDtraceFiles().from(chicory.getDtraceFile());
+    inferInvariants.getSelectedClasses().set(scopedClassNames);
+    inferInvariants.getForkOptions().set(extension.getDaikon());
+    inferInvariants
+        .getToolOptions()
+        .set(extension.getProfile().map(ExecutionProfile::daikonOptions));
+    inferInvariants.getPartitions().set(extension.getDaikonPartitions());
+    inferInvariants.getPartitionBy().set(extension.getPartitionBy());
+    inferInvariants.getParallelPartitions().set(extension.getParallelPartitions());
+    inferInvariants.dependsOn(chicory);
+
+    final PrintInvariants printInvariants =
+        createStageTask(
+            project,
+            Constants.PRINT_INVARIANTS_TASK,
+            PrintInvariants.class,
+            Constants.PRINT_INVARIANTS_TASK_DESCRIPTION,
+            extension,
+            daikonClasspath,
+            mainClass);
+    printInvariants.getInvariantsFile().set(inferInvariants.getInvariantsFile());
+    printInvariants.getForkOptions().set(extension.getPrintInvariants());
+    printInvariants.dependsOn(inferInvariants);
+
+    final AccumulateInvariants accumulateInvariants =
+        createStageTask(
+            project,
+            Constants.ACCUMULATE_INVARIANTS_TASK,
+            AccumulateInvariants.class,
+            Constants.ACCUMULATE_INVARIANTS_TASK_DESCRIPTION,
+            extension,
+            daikonClasspath,
+            mainClass);
+    accumulateInvariants.getStoreDir().set(extension.getInvariantStore());
+    accumulateInvariants.getMaxRuns().set(extension.getAccumulatedRuns());
+    // MergeInvariants uses the daikon settings
+    accumulateInvariants.getForkOptions().set(extension.getDaikon());
+
     final RunDaikon mainTask = project.getTasks().create(Constants.DAIKON_TASK, RunDaikon.class);
     mainTask.setGroup(Constants.GROUP);
     mainTask.setDescription(Constants.PLUGIN_DESCRIPTION);
 
-    mainTask.getRequires().set(extension.getRequires());
-    mainTask.getOutputDir().set(extension.getOutputDir());
-    mainTask.getTestDriverPackage().set(extension.getTestDriverPackage());
+    mainTask.getInvariantsFile().set(printInvariants.getTextFile());
+    mainTask.dependsOn(printInvariants);
+
+    project.afterEvaluate(
+        evaluated -> {
+          if (extension.getDaikonOnline().get()) {
+            if (extension.getTraceTestTask().get()) {
+              throw new GradleException(
+                  "daikonOnline cannot be combined with traceTestTask; "
+                      + "every test fork would need its own Daikon process");
+            }
+
+            // The trace never touches disk; Daikon writes the .inv.gz file directly
+            printInvariants.getInvariantsFile().set(chicoryOnline.getInvariantsFile());
+            printInvariants.setDependsOn(ImmutableList.of(chicoryOnline));
+          }
+
+          final boolean runsDynComp = ExecutionProfile.runsDynComp(extension.getProfile().get());
+          if (!runsDynComp) {
+            if (extension.getTraceTestTask().get()) {
+              throw new GradleException(
+                  "The "
+                      + extension.getProfile().get()
+                      + " profile cannot be combined with traceTestTask; "
+                      + "the test forks need DynComp's comparability file");
+            }
+
+            // Chicory then takes variables of the same declared type as comparable
+            dynComp.setEnabled(false);
+            chicory.getComparabilityFile().set((File) null);
+            chicoryOnline.getComparabilityFile().set((File) null);
+          }
+
+          if (extension.getTraceTestTask().get()) {
+            if (evaluated.hasProperty(Constants.OWN_DRIVER)) {
+              throw new GradleException(
+                  "-P"
+                      + Constants.OWN_DRIVER
+                      + " cannot be combined with traceTestTask; "
+                      + "runDynComp would depend on build, which depends on the traced test task");
+            }
+
+            configureTestTaskTracing(evaluated, extension, dynComp, inferInvariants);
+          }
+
+          if (extension.getAccumulatedRuns().get() > 0) {
+            final AbstractDaikonStage latestRun =
+                extension.getDaikonOnline().get() ? chicoryOnline : inferInvariants;
+            accumulateInvariants
+                .getInvariantsFile()
+                .set(
+                    extension.getDaikonOnline().get()
+                        ? chicoryOnline.getInvariantsFile()
+                        : inferInvariants.getInvariantsFile());
+            accumulateInvariants.dependsOn(latestRun);
+            printInvariants.getInvariantsFile().set(accumulateInvariants.getAccumulatedFile());
+            printInvariants.setDependsOn(ImmutableList.of(accumulateInvariants));
+          }
+
+          if (extension.getDynCompCache().get()) {
+            // Ahead of incremental, which then narrows the selection down to the changed classes
+            useClassScope(testClassNames, dynComp, chicory, chicoryOnline, inferInvariants);
+            dynComp
+                .getCacheDir()
+                .set(
+                    new File(
+                        evaluated.getGradle().getGradleUserHomeDir(), Constants.DYN_COMP_CACHE_DIR));
+          }
+
+          if (extension.getIncremental().get()) {
+            if (extension.getDaikonOnline().get()) {
+              throw new GradleException(
+                  "daikonOnline cannot be combined with incremental; "
+                      + "Daikon would only see the changed classes");
+            }
+
+            configureIncremental(extension, testClassNames, dynComp, chicory, inferInvariants);
+          }
+
+          if (extension.getMemoryBudget().isPresent()) {
+            final Provider<MemoryBudgetService> memoryBudget =
+                evaluated
+                    .getGradle()
+                    .getSharedServices()
+                    .registerIfAbsent(
+                        Constants.MEMORY_BUDGET_SERVICE,
+                        MemoryBudgetService.class,
+                        spec -> spec.getParameters().getBudget().set(extension.getMemoryBudget()));
+            for (AbstractDaikonStage each :
+                ImmutableList.of(
+                    dynComp,
+                    chicory,
+                    chicoryOnline,
+                    inferInvariants,
+                    accumulateInvariants,
+                    printInvariants)) {
+              each.getMemoryBudget().set(memoryBudget);
+              each.usesService(memoryBudget);
+            }
+          }
+
+          final boolean hasDynCompRuntime =
+              extension.getRequires().isPresent()
+                  && extension
+                      .getRequires()
+                      .file(Constants.DYN_COMP_RT_JAR_FILE)
+                      .get()
+                      .getAsFile()
+                      .exists();
+          if (runsDynComp && !hasDynCompRuntime) {
+            // Instrumented once per JDK and shared by every build on this machine
+            dynComp.getRuntimeJar().set(dynCompRuntime.getRuntimeJar());
+            dynComp.dependsOn(dynCompRuntime);
+          }
+
+          final boolean hasDaikonJar =
+              extension.getRequires().isPresent()
+                  && extension
+                      .getRequires()
+                      .file(Constants.DAIKON_JAR_FILE)
+                      .get()
+                      .getAsFile()
+                      .isFile();
+          if (extension.getClassDataSharing().get() && hasDaikonJar) {
+            // Built once per JDK and daikon.jar, and shared by every build on this machine
+            for (AbstractDaikonStage each :
+                ImmutableList.of(
+                    dynComp,
+                    chicory,
+                    chicoryOnline,
+                    inferInvariants,
+                    accumulateInvariants,
+                    printInvariants)) {
+              each.getCdsArchiveDir().set(cdsArchive.getArchiveDir());
+              each.dependsOn(cdsArchive);
+            }
+          }
+
+          if (extension.getDaikonWorker().get()) {
+            final Provider<DaikonWorkerService> worker =
+                registerDaikonWorker(evaluated, extension, daikonClasspath);
+            for (AbstractDaikonStage each :
+                ImmutableList.of(inferInvariants, accumulateInvariants, printInvariants)) {
+              each.getWorkerService().set(worker);
+              each.usesService(worker);
+            }
+          }
+        });
 
     return mainTask;
   }
 
+  private static void configureTestTaskTracing(
+      Project project,
+      DaikonPluginExtension extension,
+      RunDynComp dynComp,
+      InferInvariants inferInvariants) {
+    final JavaProjectHelper projectHelper = new JavaProjectHelper(project);
+    final Test testTask = projectHelper.task(JavaPlugin.TEST_TASK_NAME, Test.class);
+    final Provider<Directory> traceDir = extension.getOutputDir().dir(Constants.TEST_TRACES_DIR);
+
+    final ChicoryAgentArgumentProvider chicoryAgent = new ChicoryAgentArgumentProvider(project);
+    chicoryAgent.getPremainJar().set(extension.getRequires().file(Constants.CHICORY_JAR_FILE));
+    chicoryAgent.getComparabilityFile().set(dynComp.getDeclsFile());
+    chicoryAgent
+        .getSelectedClasses()
+        .set(
+            project.provider(
+                () ->
+                    SelectPatterns.orClasses(
+                        dynComp.getSelectPatterns().get(), dynComp.getSelectedClasses().get())));
+    chicoryAgent.getOmitPatterns().set(dynComp.getOmitPatterns());
+    chicoryAgent.getTraceDir().set(traceDir);
+
+    testTask.getJvmArgumentProviders().add(chicoryAgent);
+    // The instrumented classes call into Chicory's runtime, which lives in daikon.jar
+    testTask.setClasspath(
+        testTask
+            .getClasspath()
+            .plus(project.files(extension.getRequires().file(Constants.DAIKON_JAR_FILE))));
+    testTask.getOutputs().dir(traceDir);
+    testTask.dependsOn(dynComp);
+
+    // Don't convert to lambda. See comment in configureSourceGeneratingTask.
+    testTask.doFirst(
+        new Action<Task>() {
+          @Override
+          public void execute(Task ignored) {
+            // dtrace files from previous runs would otherwise be mixed with the new ones
+            project.delete(traceDir);
+          }
+        });
+
+    inferInvariants
+        .getDtraceFiles()
+        .setFrom(project.fileTree(traceDir).include("*" + Constants.DTRACE_EXT));
+    inferInvariants.setDependsOn(ImmutableList.of(testTask));
+  }
+
+  private static void configureIncremental(
+      DaikonPluginExtension extension,
+      Provider<List<String>> testClassNames,
+      RunDynComp dynComp,
+      RunChicory chicory,
+      InferInvariants inferInvariants) {
+    final Provider<Directory> incrementalDir =
+        extension.getOutputDir().dir(Constants.INCREMENTAL_DIR);
+    final Provider<List<String>> changedClasses =
+        testClassNames.map(
+            classNames ->
+                new IncrementalState(
+                        incrementalDir.get().getAsFile().toPath(),
+                        new ArrayList<>(dynComp.getProjectClassesDirs().getFiles()))
+                    .changedClasses(classNames));
+
+    dynComp.getSelectedClasses().set(changedClasses);
+    dynComp.getSelectPatterns().empty();
+    chicory.getSelectedClasses().set(changedClasses);
+    chicory.getSelectPatterns().empty();
+    inferInvariants.getSelectedClasses().set(changedClasses);
+    inferInvariants.getAllClasses().set(testClassNames);
+    inferInvariants.getIncrementalDir().set(incrementalDir);
+    inferInvariants.getProjectClassesDirs().from(dynComp.getProjectClassesDirs());
+
+    // Don't convert to lambda. See comment in configureSourceGeneratingTask.
+    final Spec<Task> anyClassChanged =
+        new Spec<Task>() {
+          @Override
+          public boolean isSatisfiedBy(Task ignored) {
+            return !changedClasses.get().isEmpty();
+          }
+        };
+    dynComp.onlyIf(anyClassChanged);
+    chicory.onlyIf(anyClassChanged);
+    // The merged invariants also depend on the per-class invariants of earlier runs
+    inferInvariants
+        .getOutputs()
+        .doNotCacheIf(
+            "Incremental runs merge invariants from earlier runs",
+            new Spec<Task>() {
+              @Override
+              public boolean isSatisfiedBy(Task ignored) {
+                return true;
+              }
+            });
+  }
+
+  // Results kept per test class (see dynCompCache) need each test class to be selected on its own
+  private static void useClassScope(
+      Provider<List<String>> testClassNames,
+      RunDynComp dynComp,
+      RunChicory chicory,
+      RunChicoryOnline chicoryOnline,
+      InferInvariants inferInvariants) {
+    dynComp.getSelectPatterns().empty();
+    chicory.getSelectPatterns().empty();
+    chicoryOnline.getSelectPatterns().empty();
+    inferInvariants.getSelectedClasses().set(testClassNames);
+  }
+
+  private static Provider<DirectoryScanService> registerDirectoryScans(Project project) {
+    // Shared by every project of the build, since their trees may overlap; e.g., requires
+    return project
+        .getGradle()
+        .getSharedServices()
+        .registerIfAbsent(Constants.DIRECTORY_SCAN_SERVICE, DirectoryScanService.class, spec -> {});
+  }
+
+  private static Provider<DaikonWorkerService> registerDaikonWorker(
+      Project project, DaikonPluginExtension extension, FileCollection daikonClasspath) {
+    return project
+        .getGradle()
+        .getSharedServices()
+        .registerIfAbsent(
+            Constants.DAIKON_WORKER_SERVICE,
+            DaikonWorkerService.class,
+            spec -> {
+              // The worker runs one job at a time
+              spec.getMaxParallelUsages().set(1);
+              spec.getParameters().getClasspath().from(daikonClasspath);
+              spec.getParameters()
+                  .getWorkerDir()
+                  .set(new File(project.getGradle().getGradleUserHomeDir(), Constants.DAIKON_WORKER_DIR));
+              spec.getParameters()
+                  .getIdleTimeoutMinutes()
+                  .set(extension.getDaikonWorkerIdleTimeout());
+            });
+  }
+
+  private static <T extends AbstractDaikonStage> T createStageTask(
+      Project project,
+      String taskName,
+      Class<T> taskClass,
+      String description,
+      DaikonPluginExtension extension,
+      FileCollection classpath,
+      Provider<String> mainClass) {
+    final T stageTask = createCustomPluginTask(project, taskName, taskClass);
+    stageTask.setDescription(description);
+
+    stageTask.getOutputDir().set(extension.getOutputDir());
+    stageTask.getClasspath().from(classpath);
+    stageTask.getMainClass().set(mainClass);
+    stageTask.getAsync().set(extension.getAsyncStages());
+    stageTask
+        .getHeapHistoryFile()
+        .set(
+            project
+                .getLayout()
+                .getProjectDirectory()
+                .file(Constants.HEAP_HISTORY_DIR + "/" + taskName + "-heap.properties"));
+    return stageTask;
+  }
+
   private DaikonEvidence createDaikonEvidenceTask(Project project, DaikonPluginExtension extension) {
     final DaikonEvidence daikonEvidence = project.getTasks().create(Constants.DAIKON_EVIDENCE_TASK, DaikonEvidence.class);
     daikonEvidence.setGroup(Constants.GROUP);
@@ -70,15 +623,21 @@ public class DaikonPlugin implements Plugin<Project> {
 
     daikonEvidence.getOutputDir().set(extension.getOutputDir());
     daikonEvidence.getTestDriverPackage().set(extension.getTestDriverPackage());
+
+    final Provider<DirectoryScanService> scans = registerDirectoryScans(project);
+    daikonEvidence.getDirectoryScans().set(scans);
+    daikonEvidence.usesService(scans);
     return daikonEvidence;
   }
 
-  private CheckForDaikon createCheckForDaikonTask(Project project) {
+  private CheckForDaikon createCheckForDaikonTask(
+      Project project, DaikonPluginExtension extension) {
     // Chicory and DynComp can be accessed via daikon.jar;
     // meaning if daikon.jar is in your classpath then we can assume they are there too
     CheckForDaikon checkTask =
         createCustomPluginTask(project, Constants.CHECK_DAIKON_TASK, CheckForDaikon.class);
     checkTask.setDescription(Constants.CHECK_DAIKON_TASK_DESCRIPTION);
+    checkTask.getRequires().set(extension.getRequires());
     return checkTask;
   }
 
@@ -88,9 +647,27 @@ public class DaikonPlugin implements Plugin<Project> {
         createCustomPluginTask(project, Constants.CODE_GEN_TASK, SourceGeneratingTask.class);
     genCodeTask.setDescription(Constants.CODE_GEN_TASK_DESCRIPTION);
 
+    final JavaProjectHelper projectHelper = new JavaProjectHelper(project);
+
     genCodeTask.getTestDriverPackage().set(extension.getTestDriverPackage());
+    genCodeTask.getEmitBytecode().set(extension.getDriverBytecode());
+    genCodeTask
+        .getDriverClassesDir()
+        .set(projectHelper.getBuildDir().dir(Constants.TEST_DRIVER_CLASSES_DIR));
+    // Reads the test classes, which aren't declared as inputs, so it always runs
+    genCodeTask
+        .getOutputs()
+        .upToDateWhen(
+            new Spec<Task>() {
+              @Override
+              public boolean isSatisfiedBy(Task ignored) {
+                return false;
+              }
+            });
 
-    final JavaProjectHelper projectHelper = new JavaProjectHelper(project);
+    final Provider<DirectoryScanService> scans = registerDirectoryScans(project);
+    genCodeTask.getDirectoryScans().set(scans);
+    genCodeTask.usesService(scans);
 
     Optional<JavaCompile> javaCompileTask =
         projectHelper.findTask(JavaPlugin.COMPILE_TEST_JAVA_TASK_NAME, JavaCompile.class);
@@ -99,6 +676,8 @@ public class DaikonPlugin implements Plugin<Project> {
     }
 
     final JavaCompile javaCompile = javaCompileTask.get();
+    // The test classes are read to find the ones the driver runs
+    genCodeTask.dependsOn(javaCompile);
     final CompileTestDriverJavaExtension driverExtension =
         javaCompile
             .getExtensions()
@@ -115,6 +694,15 @@ public class DaikonPlugin implements Plugin<Project> {
     final JavaCompile testDriverJavaCompile =
         projectHelper.task(Constants.COMPILE_TEST_DRIVER, JavaCompile.class);
     testDriverJavaCompile.dependsOn(genCodeTask);
+    // Don't convert to lambda. See comment below.
+    testDriverJavaCompile.onlyIf(
+        new Spec<Task>() {
+          @Override
+          public boolean isSatisfiedBy(Task ignored) {
+            // The driver is already compiled
+            return !extension.getDriverBytecode().get();
+          }
+        });
     final CompileTestJavaTaskMutator compileMutator =
         new CompileTestJavaTaskMutator(
             project,
@@ -130,7 +718,9 @@ public class DaikonPlugin implements Plugin<Project> {
         new Action<Task>() {
           @Override
           public void execute(Task ignored) {
-            compileMutator.mutateJavaCompileTask(testDriverJavaCompile);
+            if (!extension.getDriverBytecode().get()) {
+              compileMutator.mutateJavaCompileTask(testDriverJavaCompile);
+            }
           }
         });
 
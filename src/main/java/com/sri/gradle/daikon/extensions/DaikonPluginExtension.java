@@ -1,5 +1,9 @@
 package com.sri.gradle.daikon.extensions;
 
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.internal.ExecutionProfile;
+import com.sri.gradle.daikon.internal.ProgramPointPartitioner;
+import org.gradle.api.Action;
 import org.gradle.api.Project;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
@@ -10,11 +14,59 @@ public class DaikonPluginExtension {
   private final DirectoryProperty outputDir;
   private final DirectoryProperty requires;
   private final Property<String> testDriverPackage;
+  private final Property<Boolean> traceTestTask;
+  private final Property<Integer> daikonPartitions;
+  private final Property<String> partitionBy;
+  private final Property<Boolean> parallelPartitions;
+  private final Property<Boolean> daikonOnline;
+  private final Property<Boolean> daikonWorker;
+  private final Property<Integer> daikonWorkerIdleTimeout;
+  private final Property<Boolean> asyncStages;
+  private final Property<String> memoryBudget;
+  private final Property<Boolean> dynCompCache;
+  private final Property<Boolean> incremental;
+  private final Property<Integer> accumulatedRuns;
+  private final DirectoryProperty invariantStore;
+  private final Property<Boolean> driverBytecode;
+  private final Property<Boolean> classDataSharing;
+  private final Property<String> profile;
+  private final InstrumentationScope instrument;
+  private final StageForkOptions dynComp;
+  private final StageForkOptions chicory;
+  private final StageForkOptions daikon;
+  private final StageForkOptions printInvariants;
 
   public DaikonPluginExtension(Project project) {
     this.outputDir = project.getObjects().directoryProperty();
     this.requires = project.getObjects().directoryProperty();
     this.testDriverPackage = project.getObjects().property(String.class);
+    this.traceTestTask = project.getObjects().property(Boolean.class).convention(false);
+    this.daikonPartitions = project.getObjects().property(Integer.class).convention(1);
+    this.partitionBy =
+        project.getObjects().property(String.class).convention(ProgramPointPartitioner.BY_CLASS);
+    this.parallelPartitions = project.getObjects().property(Boolean.class).convention(true);
+    this.daikonOnline = project.getObjects().property(Boolean.class).convention(false);
+    this.daikonWorker = project.getObjects().property(Boolean.class).convention(false);
+    this.daikonWorkerIdleTimeout = project.getObjects().property(Integer.class).convention(30);
+    this.asyncStages = project.getObjects().property(Boolean.class).convention(false);
+    this.memoryBudget = project.getObjects().property(String.class);
+    this.dynCompCache = project.getObjects().property(Boolean.class).convention(false);
+    this.incremental = project.getObjects().property(Boolean.class).convention(false);
+    this.accumulatedRuns = project.getObjects().property(Integer.class).convention(0);
+    this.invariantStore =
+        project
+            .getObjects()
+            .directoryProperty()
+            .convention(project.getLayout().getProjectDirectory().dir(Constants.INVARIANT_STORE_DIR));
+    this.driverBytecode = project.getObjects().property(Boolean.class).convention(false);
+    this.classDataSharing = project.getObjects().property(Boolean.class).convention(false);
+    this.profile =
+        project.getObjects().property(String.class).convention(ExecutionProfile.STANDARD);
+    this.instrument = new InstrumentationScope(project);
+    this.dynComp = new StageForkOptions(project);
+    this.chicory = new StageForkOptions(project);
+    this.daikon = new StageForkOptions(project);
+    this.printInvariants = new StageForkOptions(project);
   }
 
   public DirectoryProperty getOutputDir() {
@@ -29,4 +81,219 @@ public class DaikonPluginExtension {
     return testDriverPackage;
   }
 
+  /**
+   * When true, Chicory traces the project's test task instead of the test driver. Every forked
+   * test JVM (see {@code maxParallelForks} and {@code forkEvery}) writes its own dtrace file, and
+   * Daikon processes all of them together.
+   *
+   * @return whether the test task is traced
+   */
+  public Property<Boolean> getTraceTestTask() {
+    return traceTestTask;
+  }
+
+  /**
+   * Number of Daikon processes the program points are split across. Each process reads all dtrace
+   * files but only keeps the program points of its group, so the groups' heaps are smaller than
+   * a single Daikon heap. The partial results are merged with MergeInvariants.
+   *
+   * @return the number of partitions; 1 (the default) disables partitioning
+   */
+  public Property<Integer> getDaikonPartitions() {
+    return daikonPartitions;
+  }
+
+  /**
+   * Unit of partitioning: {@code "class"} (the default) or {@code "package"}. Program points of
+   * the same unit are always processed by the same Daikon process.
+   *
+   * @return the partitioning strategy
+   */
+  public Property<String> getPartitionBy() {
+    return partitionBy;
+  }
+
+  /**
+   * When false, the Daikon partitions run one after another. This trades wall-clock time for a
+   * peak memory footprint of a single partition.
+   *
+   * @return whether partitions run concurrently
+   */
+  public Property<Boolean> getParallelPartitions() {
+    return parallelPartitions;
+  }
+
+  /**
+   * When true, Chicory streams the trace straight into a Daikon process running alongside the
+   * test driver, instead of writing a dtrace file for {@code inferInvariants} to read afterwards.
+   * Partitioning does not apply in this mode.
+   *
+   * @return whether Daikon runs online
+   */
+  public Property<Boolean> getDaikonOnline() {
+    return daikonOnline;
+  }
+
+  /**
+   * When true, Daikon, PrintInvariants, and MergeInvariants run in a long-lived worker JVM instead
+   * of in a new JVM per stage, which saves the JVM startup. Each job still loads daikon.jar afresh,
+   * since Daikon keeps its settings in static fields. The worker is shared by later builds until it
+   * has been idle for {@link #getDaikonWorkerIdleTimeout()}. It only takes the stages' heap
+   * settings: their other JVM arguments, the memory budget, and peak heap recording don't apply.
+   *
+   * @return whether the warm worker is used
+   */
+  public Property<Boolean> getDaikonWorker() {
+    return daikonWorker;
+  }
+
+  /** @return minutes the warm worker waits for a job before exiting; 30 by default */
+  public Property<Integer> getDaikonWorkerIdleTimeout() {
+    return daikonWorkerIdleTimeout;
+  }
+
+  /**
+   * When true, the Daikon stages run through Gradle's Worker API. Each tool is forked from a
+   * worker thread, in a JVM of its own per work item. Stage tasks then don't hold the task
+   * thread, so with {@code --parallel} Gradle can run other work meanwhile, and {@code
+   * org.gradle.workers.max} caps the number of Daikon JVMs. Off by default.
+   *
+   * @return whether stages run as Gradle work items
+   */
+  public Property<Boolean> getAsyncStages() {
+    return asyncStages;
+  }
+
+  /**
+   * Per-build memory budget for forked DynComp, Chicory, and Daikon JVMs, in JVM heap size
+   * syntax; e.g., {@code "24g"}. A fork starts only when its max heap fits in what's left of the
+   * budget; otherwise it waits. The budget is shared by all projects in the build, and the first
+   * project to configure it wins. It doesn't account for other builds or Gradle daemons running at
+   * the same time, the Daikon worker (see {@link #getDaikonWorker()}), or the test task's forks
+   * when {@code traceTestTask} is set. Unset (the default) means no limit.
+   *
+   * @return the memory budget
+   */
+  public Property<String> getMemoryBudget() {
+    return memoryBudget;
+  }
+
+  /**
+   * When true, DynComp's results are cached per class under the Gradle user home, keyed by the
+   * bytecode of the class and of the project classes it refers to. DynComp then only runs on
+   * classes whose key changed, and the declarations file is assembled from cached and fresh
+   * results. The cache survives clean builds and is shared across branches and projects.
+   *
+   * @return whether DynComp results are cached
+   */
+  public Property<Boolean> getDynCompCache() {
+    return dynCompCache;
+  }
+
+  /**
+   * When true, only the test classes whose bytecode (or whose project dependencies' bytecode)
+   * changed since the last run are traced and analyzed. Their invariants replace the previous
+   * ones, kept per class in the output directory, and all classes' invariants are merged into the
+   * usual invariants file. Cannot be combined with {@link #getDaikonOnline()}.
+   *
+   * @return whether Daikon runs incrementally
+   */
+  public Property<Boolean> getIncremental() {
+    return incremental;
+  }
+
+  /**
+   * When true, the generated test driver (see {@code -Pdriver}) is written directly as a class
+   * file into {@code build/daikon/driver-classes}, and compileTestDriverJava is skipped. The driver
+   * reads the test class names from a resource next to it.
+   *
+   * @return whether the test driver is emitted as bytecode
+   */
+  public Property<Boolean> getDriverBytecode() {
+    return driverBytecode;
+  }
+
+  /**
+   * When true, the classes the Daikon tools load on startup are archived once per daikon.jar and
+   * JDK under the Gradle user home, and every forked tool JVM maps the archive instead of loading
+   * them from daikon.jar. Needs JDK 11 or later; ignored on older JDKs.
+   *
+   * @return whether the tool JVMs use a class data sharing archive
+   */
+  public Property<Boolean> getClassDataSharing() {
+    return classDataSharing;
+  }
+
+  /**
+   * Execution profile: {@code "preview"}, {@code "standard"} (the default), or {@code "thorough"}.
+   * The preview profile skips DynComp, samples the trace, and has Daikon derive no variables, for
+   * approximate invariants in a fraction of the time; see {@link ExecutionProfile}.
+   *
+   * @return the execution profile
+   */
+  public Property<String> getProfile() {
+    return profile;
+  }
+
+  /**
+   * Number of runs whose invariants are accumulated. When positive, each run's invariants are
+   * added to {@link #getInvariantStore()}, the oldest runs beyond this number are dropped, and
+   * {@code printInvariants} prints the merge of all stored runs. 0 (the default) disables it.
+   *
+   * @return the number of runs kept in the invariant store
+   */
+  public Property<Integer> getAccumulatedRuns() {
+    return accumulatedRuns;
+  }
+
+  /** @return where accumulated runs are kept; {@code .gradle/daikon/invariant-store} by default */
+  public DirectoryProperty getInvariantStore() {
+    return invariantStore;
+  }
+
+  /** @return the classes DynComp and Chicory instrument */
+  public InstrumentationScope getInstrument() {
+    return instrument;
+  }
+
+  public void instrument(Action<? super InstrumentationScope> action) {
+    action.execute(instrument);
+  }
+
+  /** @return JVM settings for DynComp */
+  public StageForkOptions getDynComp() {
+    return dynComp;
+  }
+
+  public void dynComp(Action<? super StageForkOptions> action) {
+    action.execute(dynComp);
+  }
+
+  /** @return JVM settings for Chicory, including online mode */
+  public StageForkOptions getChicory() {
+    return chicory;
+  }
+
+  public void chicory(Action<? super StageForkOptions> action) {
+    action.execute(chicory);
+  }
+
+  /** @return JVM settings for Daikon, which MergeInvariants shares */
+  public StageForkOptions getDaikon() {
+    return daikon;
+  }
+
+  public void daikon(Action<? super StageForkOptions> action) {
+    action.execute(daikon);
+  }
+
+  /** @return JVM settings for PrintInvariants */
+  public StageForkOptions getPrintInvariants() {
+    return printInvariants;
+  }
+
+  public void printInvariants(Action<? super StageForkOptions> action) {
+    action.execute(printInvariants);
+  }
+
 }
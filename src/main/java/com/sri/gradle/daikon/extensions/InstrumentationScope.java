@@ -0,0 +1,51 @@
+package com.sri.gradle.daikon.extensions;
+
+import org.gradle.api.Project;
+import org.gradle.api.provider.ListProperty;
+
+/**
+ * The classes DynComp and Chicory instrument, by package or class name. A name covers everything
+ * nested in it. E.g.,
+ *
+ * <pre>
+ * runDaikon {
+ *   instrument {
+ *     include "com.foo"
+ *     exclude "com.foo.generated", "com.foo.Main"
+ *   }
+ * }
+ * </pre>
+ *
+ * <p>Without includes, the packages of the main source set's classes are instrumented, collapsed
+ * into a single pattern; e.g., {@code com.foo} stands for {@code com.foo.bar} too. Test classes
+ * that share a package with the code under test are instrumented as well.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class InstrumentationScope {
+
+  private final ListProperty<String> includes;
+  private final ListProperty<String> excludes;
+
+  public InstrumentationScope(Project project) {
+    this.includes = project.getObjects().listProperty(String.class);
+    this.excludes = project.getObjects().listProperty(String.class);
+  }
+
+  /** @return package or class names to instrument; empty (the default) for the main source set */
+  public ListProperty<String> getIncludes() {
+    return includes;
+  }
+
+  /** @return package or class names not to instrument, even if they're included */
+  public ListProperty<String> getExcludes() {
+    return excludes;
+  }
+
+  public void include(String... names) {
+    includes.addAll(names);
+  }
+
+  public void exclude(String... names) {
+    excludes.addAll(names);
+  }
+}
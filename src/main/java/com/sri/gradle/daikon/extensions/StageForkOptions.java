@@ -0,0 +1,125 @@
+package com.sri.gradle.daikon.extensions;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.Project;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+
+/**
+ * JVM settings for the tool of a single Daikon stage. E.g.,
+ *
+ * <pre>
+ * runDaikon {
+ *   dynComp {
+ *     maxHeapSize = "6g"
+ *     tracedHeapSize = "4g"
+ *   }
+ *   daikon {
+ *     maxHeapSize = "12g"
+ *     garbageCollector = "Parallel"
+ *   }
+ * }
+ * </pre>
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class StageForkOptions {
+
+  private final Property<String> minHeapSize;
+  private final Property<String> maxHeapSize;
+  private final ListProperty<String> jvmArgs;
+  private final Property<String> garbageCollector;
+  private final Property<String> tracedHeapSize;
+  private final Property<Boolean> autoHeap;
+  private final Property<Boolean> pathingJar;
+  private final Property<Boolean> directLaunch;
+
+  public StageForkOptions(Project project) {
+    this.minHeapSize = project.getObjects().property(String.class);
+    this.maxHeapSize = project.getObjects().property(String.class);
+    this.jvmArgs = project.getObjects().listProperty(String.class);
+    this.garbageCollector = project.getObjects().property(String.class);
+    this.tracedHeapSize = project.getObjects().property(String.class);
+    this.autoHeap = project.getObjects().property(Boolean.class).convention(false);
+    this.pathingJar = project.getObjects().property(Boolean.class).convention(false);
+    this.directLaunch = project.getObjects().property(Boolean.class).convention(false);
+  }
+
+  /** @return the tool JVM's initial heap; e.g., {@code 512m} */
+  public Property<String> getMinHeapSize() {
+    return minHeapSize;
+  }
+
+  /** @return the tool JVM's max heap; e.g., {@code 8g} */
+  public Property<String> getMaxHeapSize() {
+    return maxHeapSize;
+  }
+
+  /** @return extra arguments for the tool JVM */
+  public ListProperty<String> getJvmArgs() {
+    return jvmArgs;
+  }
+
+  /**
+   * Garbage collector of the tool JVM, by HotSpot name: {@code G1}, {@code Parallel}, {@code
+   * Serial}, {@code Z}, or {@code Shenandoah}. It becomes {@code -XX:+Use<name>GC}.
+   *
+   * @return the garbage collector
+   */
+  public Property<String> getGarbageCollector() {
+    return garbageCollector;
+  }
+
+  /**
+   * Max heap of the traced program's JVM, which DynComp and Chicory start with their {@code
+   * --heap-size} option. Ignored by the other stages.
+   *
+   * @return the traced JVM's max heap
+   */
+  public Property<String> getTracedHeapSize() {
+    return tracedHeapSize;
+  }
+
+  /**
+   * When true, the max heap is estimated from the size of the stage's input, the program points
+   * and peak heap recorded by the previous run, and the machine's or container's memory limit.
+   * Overrides {@link #getMaxHeapSize()}. Only the daikon and printInvariants stages support it.
+   *
+   * @return whether the max heap is estimated
+   */
+  public Property<Boolean> getAutoHeap() {
+    return autoHeap;
+  }
+
+  /**
+   * When true, the tool JVM's classpath is a single jar whose manifest lists the actual classpath.
+   * DynComp and Chicory pass it on to the traced JVM, whose command line then stays short too.
+   * Used regardless of this setting when the classpath is too long for a command line.
+   *
+   * @return whether a pathing jar stands for the classpath
+   */
+  public Property<Boolean> getPathingJar() {
+    return pathingJar;
+  }
+
+  /**
+   * When true, the traced program's JVM is started with Chicory's premain agent attached, instead
+   * of through Chicory's launcher, which would fork it from a JVM of its own. The traced JVM then
+   * takes this stage's JVM settings, with {@link #getTracedHeapSize()} as its max heap. Only the
+   * chicory stage supports it, and not for online runs.
+   *
+   * @return whether the traced JVM is started directly
+   */
+  public Property<Boolean> getDirectLaunch() {
+    return directLaunch;
+  }
+
+  /** @return {@link #getJvmArgs()} plus the garbage collector flag, if any */
+  public List<String> getAllJvmArgs() {
+    final List<String> allJvmArgs = new ArrayList<>(getJvmArgs().getOrElse(new ArrayList<>()));
+    if (getGarbageCollector().isPresent()) {
+      allJvmArgs.add("-XX:+Use" + getGarbageCollector().get() + "GC");
+    }
+    return allJvmArgs;
+  }
+}
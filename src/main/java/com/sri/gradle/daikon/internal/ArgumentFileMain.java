@@ -0,0 +1,42 @@
+package com.sri.gradle.daikon.internal;
+
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Runs a tool whose arguments are too long for a command line. They are read from a file, one per
+ * line, the first being the tool's main class. Unlike the {@code java} launcher's own {@code @file}
+ * arguments, this also works on Java 8 and for the arguments of the main class.
+ *
+ * <p>Usage: {@code ArgumentFileMain <argument-file>}.
+ *
+ * <p>Note: this class is the forked JVM's main class, so it must not depend on Gradle or Guava.
+ */
+public class ArgumentFileMain {
+
+  private ArgumentFileMain() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  public static void main(String[] args) throws Throwable {
+    if (args.length != 1) {
+      throw new IllegalArgumentException("Usage: ArgumentFileMain <argument-file>");
+    }
+
+    final List<String> lines = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8);
+    if (lines.isEmpty()) {
+      throw new IllegalArgumentException(args[0] + " names no main class");
+    }
+
+    try {
+      Class.forName(lines.get(0))
+          .getMethod("main", String[].class)
+          .invoke(null, (Object) lines.subList(1, lines.size()).toArray(new String[0]));
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+}
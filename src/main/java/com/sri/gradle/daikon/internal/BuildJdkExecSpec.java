@@ -0,0 +1,10 @@
+package com.sri.gradle.daikon.internal;
+
+import java.nio.file.Path;
+
+public class BuildJdkExecSpec extends MainExecSpec {
+  public void setOutputDirectory(Path directory) {
+    // BuildJDK takes the destination as its first argument
+    args(String.format("%s", directory.toAbsolutePath()));
+  }
+}
@@ -0,0 +1,137 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.Constants;
+import java.io.File;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.List;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.process.CommandLineArgumentProvider;
+
+/**
+ * Attaches Chicory to the JVMs forked by a Test task. Each fork writes its own dtrace file to the
+ * trace directory (see {@link ChicoryForkPremain}).
+ *
+ * <p>Chicory splits its agent options at spaces and has no way to quote them, so none of the
+ * options (paths and patterns alike) may contain a space.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class ChicoryAgentArgumentProvider implements CommandLineArgumentProvider {
+  private final RegularFileProperty premainJar;
+  private final RegularFileProperty comparabilityFile;
+  private final ListProperty<String> selectedClasses;
+  private final ListProperty<String> omitPatterns;
+  private final DirectoryProperty traceDir;
+
+  public ChicoryAgentArgumentProvider(Project project) {
+    this.premainJar = project.getObjects().fileProperty();
+    this.comparabilityFile = project.getObjects().fileProperty();
+    this.selectedClasses = project.getObjects().listProperty(String.class);
+    this.omitPatterns = project.getObjects().listProperty(String.class);
+    this.traceDir = project.getObjects().directoryProperty();
+  }
+
+  @Override
+  public Iterable<String> asArguments() {
+    // e.g., an incremental run where no class changed
+    if (getSelectedClasses().get().isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    final List<String> agentArgs = new ArrayList<>();
+    agentArgs.add("--premain=" + getPremainJar().getAsFile().get().getAbsolutePath());
+    agentArgs.add(
+        "--comparability-file=" + getComparabilityFile().getAsFile().get().getAbsolutePath());
+    agentArgs.add("--output-dir=" + getTraceDir().getAsFile().get().getAbsolutePath());
+    agentArgs.add(
+        "--dtrace-file=test-worker-" + ChicoryForkPremain.WORKER_PLACEHOLDER + Constants.DTRACE_EXT);
+    for (String each : getSelectedClasses().get()) {
+      agentArgs.add("--ppt-select-pattern=" + each);
+    }
+    for (String each : getOmitPatterns().get()) {
+      agentArgs.add("--ppt-omit-pattern=" + each);
+    }
+
+    for (String each : agentArgs) {
+      if (each.contains(" ")) {
+        throw new GradleException(
+            "Unable to trace the test task: Chicory splits its agent options at spaces, so it "
+                + "can't be passed "
+                + each
+                + "; move the project to a path without spaces, or set traceTestTask = false");
+      }
+    }
+
+    return ImmutableList.of(
+        "-javaagent:" + getAgentJar().getAbsolutePath() + "=" + Joiner.on(' ').join(agentArgs));
+  }
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public RegularFileProperty getPremainJar() {
+    return premainJar;
+  }
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public RegularFileProperty getComparabilityFile() {
+    return comparabilityFile;
+  }
+
+  @Input
+  public ListProperty<String> getSelectedClasses() {
+    return selectedClasses;
+  }
+
+  @Input
+  public ListProperty<String> getOmitPatterns() {
+    return omitPatterns;
+  }
+
+  // Declared as an output of the Test task
+  @Internal
+  public DirectoryProperty getTraceDir() {
+    return traceDir;
+  }
+
+  /** @return the jar containing this plugin, which doubles as the agent's and worker's jar. */
+  static File getAgentJar() {
+    final File location = getPluginLocation();
+    if (location != null && location.isFile() && location.getName().endsWith(".jar")) {
+      return location;
+    }
+
+    throw new GradleException(
+        "Tracing the test task or using the Daikon worker requires the Daikon plugin to be loaded "
+            + "from a jar file");
+  }
+
+  /**
+   * @return the jar or classes directory the plugin was loaded from, or null if it can't be told.
+   *     Classes the traced JVMs load from it must not depend on Gradle or Guava.
+   */
+  public static File getPluginLocation() {
+    final CodeSource codeSource = ChicoryForkPremain.class.getProtectionDomain().getCodeSource();
+    if (codeSource == null) {
+      return null;
+    }
+
+    try {
+      return new File(codeSource.getLocation().toURI());
+    } catch (URISyntaxException ignored) {
+      return null;
+    }
+  }
+}
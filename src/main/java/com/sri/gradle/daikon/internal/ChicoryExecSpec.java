@@ -1,9 +1,29 @@
 package com.sri.gradle.daikon.internal;
 
+import java.io.File;
 import java.nio.file.Path;
+import java.util.List;
 
 public class ChicoryExecSpec extends MainExecSpec {
   public void setComparabilityFile(Path directory, String filename) {
     args(String.format("--comparability-file=%s", relativizeFile(directory, filename)));
   }
+
+  public void setDaikonOnline(Path directory, String invariantsFileName) {
+    // Chicory starts Daikon itself and sends it the trace over a socket
+    args("--daikon-online");
+    args(String.format("--daikon-args=-o %s", relativizeFile(directory, invariantsFileName)));
+  }
+
+  /**
+   * Attaches Chicory's premain agent to the traced JVM, which is then this spec's JVM; its main
+   * class is the target class. Must follow {@link #setForkOptions}, which resets the JVM arguments.
+   *
+   * @param premainJar a jar whose manifest names Chicory's premain class
+   * @param premainArgs Chicory's options; Chicory splits them at spaces, so none may contain one
+   */
+  public void setJavaAgent(File premainJar, List<String> premainArgs) {
+    final String options = String.join(" ", premainArgs);
+    getJvmArgs().add(String.format("-javaagent:%s=%s", premainJar.getAbsolutePath(), options));
+  }
 }
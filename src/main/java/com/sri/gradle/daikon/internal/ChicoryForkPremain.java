@@ -0,0 +1,60 @@
+package com.sri.gradle.daikon.internal;
+
+import java.lang.instrument.Instrumentation;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.jar.JarFile;
+
+/**
+ * Java agent attached to the forked JVMs of Gradle's Test task. It gives each fork its own dtrace
+ * file and then hands over to Chicory's own premain.
+ *
+ * <p>The agent options are Chicory's premain options plus {@code --premain=<ChicoryPremain.jar>}.
+ * Every occurrence of {@value #WORKER_PLACEHOLDER} is replaced with the id Gradle assigns to the
+ * test worker (the {@code org.gradle.test.worker} system property).
+ *
+ * <p>Note: this class is loaded by the traced JVM, so it must not depend on Gradle or Guava.
+ */
+public class ChicoryForkPremain {
+  public static final String WORKER_PLACEHOLDER = "{worker}";
+
+  private static final String PREMAIN_OPTION = "--premain=";
+  private static final String CHICORY_PREMAIN_CLASS = "daikon.chicory.ChicoryPremain";
+
+  private ChicoryForkPremain() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  public static void premain(String agentArgs, Instrumentation inst) throws Exception {
+    final String worker = System.getProperty("org.gradle.test.worker", processId());
+
+    String premainJar = null;
+    final StringBuilder chicoryArgs = new StringBuilder();
+    for (String each : agentArgs.split(" +")) {
+      if (each.startsWith(PREMAIN_OPTION)) {
+        premainJar = each.substring(PREMAIN_OPTION.length());
+        continue;
+      }
+
+      if (chicoryArgs.length() > 0) {
+        chicoryArgs.append(' ');
+      }
+      chicoryArgs.append(each.replace(WORKER_PLACEHOLDER, worker));
+    }
+
+    if (premainJar == null) {
+      throw new IllegalArgumentException("Missing " + PREMAIN_OPTION + " option");
+    }
+
+    inst.appendToSystemClassLoaderSearch(new JarFile(premainJar));
+    final Class<?> chicoryPremain = ClassLoader.getSystemClassLoader().loadClass(CHICORY_PREMAIN_CLASS);
+    final Method premain = chicoryPremain.getMethod("premain", String.class, Instrumentation.class);
+    premain.invoke(null, chicoryArgs.toString(), inst);
+  }
+
+  private static String processId() {
+    // RuntimeMXBean's name is pid@hostname on all the JVMs we care about
+    final String name = ManagementFactory.getRuntimeMXBean().getName();
+    return name.contains("@") ? name.substring(0, name.indexOf('@')) : name;
+  }
+}
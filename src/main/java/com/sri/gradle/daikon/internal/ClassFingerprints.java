@@ -0,0 +1,108 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.utils.ClassFiles;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Hashes a project class together with every project class it transitively refers to, so that the
+ * hash changes whenever the class or code it may run is recompiled differently.
+ */
+public class ClassFingerprints {
+  private final List<File> classesDirs;
+  private final Map<String, byte[]> classBytes = new HashMap<>();
+  private final Map<String, Set<String>> references = new HashMap<>();
+
+  /** @param classesDirs the project's class directories */
+  public ClassFingerprints(List<File> classesDirs) {
+    this.classesDirs = classesDirs;
+  }
+
+  /**
+   * @param className the class's binary name
+   * @return the fingerprint of the class and its transitive project dependencies, or null if the
+   *     class file can't be found or read
+   */
+  public String fingerprint(String className) {
+    if (classBytes(className) == null) {
+      return null;
+    }
+
+    // Sorted, so the fingerprint doesn't depend on constant pool or traversal order
+    final Set<String> closure = new TreeSet<>();
+    final Deque<String> pending = new ArrayDeque<>();
+    pending.add(className);
+    while (!pending.isEmpty()) {
+      final String each = pending.remove();
+      if (classBytes(each) == null || !closure.add(each)) {
+        continue;
+      }
+
+      final Set<String> referenced = references(each);
+      if (referenced == null) {
+        return null;
+      }
+      pending.addAll(referenced);
+    }
+
+    final Hasher hasher = Hashing.sha256().newHasher();
+    hasher.putString(className, Constants.ENCODING);
+    for (String each : closure) {
+      hasher.putString(each, Constants.ENCODING);
+      hasher.putBytes(classBytes(each));
+    }
+
+    return hasher.hash().toString();
+  }
+
+  /**
+   * @param className the class's binary name
+   * @return the hash of the class file alone, or null if it can't be found or read
+   */
+  public String classFingerprint(String className) {
+    final byte[] bytes = classBytes(className);
+    return bytes == null ? null : Hashing.sha256().hashBytes(bytes).toString();
+  }
+
+  private Set<String> references(String className) {
+    return references.computeIfAbsent(
+        className,
+        name -> {
+          try {
+            return ClassFiles.referencedClasses(classBytes(name));
+          } catch (IOException e) {
+            return null;
+          }
+        });
+  }
+
+  private byte[] classBytes(String className) {
+    return classBytes.computeIfAbsent(
+        className,
+        name -> {
+          final String relativePath = name.replace('.', File.separatorChar) + ".class";
+          for (File each : classesDirs) {
+            final Path classFile = each.toPath().resolve(relativePath);
+            if (Files.isRegularFile(classFile)) {
+              try {
+                return Files.readAllBytes(classFile);
+              } catch (IOException ignored) {
+              }
+            }
+          }
+          return null;
+        });
+  }
+}
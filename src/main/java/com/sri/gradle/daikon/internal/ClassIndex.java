@@ -0,0 +1,226 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.base.Joiner;
+import com.google.common.base.Splitter;
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.utils.ClassFiles;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Persistent index of class file summaries (see {@link ClassFiles#summarize(byte[])}), one line
+ * per class file. A class file is only read again once its size or modification time changes, so
+ * discovering tests and main classes is cheap after the first run. Changed class files are read
+ * in parallel.
+ */
+public class ClassIndex {
+  private static final char SEPARATOR = '\t';
+  private static final String NONE = "-";
+  // JUnit 3 tests are found by name, not by annotation
+  private static final String JUNIT3_TEST_CASE = "junit.framework.TestCase";
+
+  private final Path indexFile;
+
+  /** @param indexFile where the index is kept; e.g., under the build directory */
+  public ClassIndex(Path indexFile) {
+    this.indexFile = indexFile;
+  }
+
+  /**
+   * Summarizes class files, reading only the ones that changed since they were last indexed.
+   *
+   * @param classFiles the class files to summarize
+   * @return summaries by class binary name, sorted by name; unreadable class files are left out
+   */
+  public synchronized Map<String, ClassFiles.Summary> summarize(List<File> classFiles) {
+    final Map<String, Entry> previous = load();
+    final Map<String, Entry> current = new ConcurrentHashMap<>();
+
+    classFiles.parallelStream()
+        .forEach(
+            file -> {
+              final String path = file.getAbsolutePath();
+              final Entry indexed = previous.get(path);
+              final Entry entry =
+                  indexed != null && indexed.isCurrent(file) ? indexed : Entry.read(file);
+              if (entry != null) {
+                current.put(path, entry);
+              }
+            });
+
+    final boolean changed =
+        current.size() != classFiles.size()
+            || current.entrySet().stream().anyMatch(e -> previous.get(e.getKey()) != e.getValue());
+    if (changed) {
+      // Class files of other directories stay indexed while they exist
+      final Map<String, Entry> merged = new TreeMap<>(current);
+      previous.forEach(
+          (path, entry) -> {
+            if (!merged.containsKey(path) && new File(path).isFile()) {
+              merged.put(path, entry);
+            }
+          });
+      store(merged);
+    }
+
+    final Map<String, ClassFiles.Summary> summaries = new TreeMap<>();
+    current.values().forEach(e -> summaries.put(e.summary.getName(), e.summary));
+    return summaries;
+  }
+
+  /**
+   * Finds the public, top-level, concrete classes that declare or inherit JUnit 4 tests, or that
+   * extend JUnit 3's {@code TestCase}. Tests are only seen through superclasses that are summarized
+   * too. The driver refers to each class from its own package, hence public only.
+   *
+   * @param classes summaries from {@link #summarize(List)}
+   * @return the test classes' binary names, sorted
+   */
+  public static List<String> testClasses(Map<String, ClassFiles.Summary> classes) {
+    return classes.values().stream()
+        .filter(ClassFiles.Summary::isPublic)
+        .filter(ClassFiles.Summary::isConcrete)
+        .filter(c -> !c.getName().contains("$"))
+        .filter(c -> hasTests(c, classes))
+        .map(ClassFiles.Summary::getName)
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * Finds the class to run as a test driver: the one declaring {@code public static void
+   * main(String[])} whose name ends with {@value Constants#TEST_DRIVER}, or else the only class
+   * declaring main.
+   *
+   * @param classes summaries from {@link #summarize(List)}
+   * @return the driver's binary name, if there is one
+   */
+  public static Optional<String> findMainClass(Map<String, ClassFiles.Summary> classes) {
+    final List<String> mainClasses =
+        classes.values().stream()
+            .filter(ClassFiles.Summary::hasMain)
+            .map(ClassFiles.Summary::getName)
+            .collect(Collectors.toList());
+
+    final Optional<String> driver =
+        mainClasses.stream().filter(name -> name.endsWith(Constants.TEST_DRIVER)).findFirst();
+    if (driver.isPresent() || mainClasses.size() != 1) {
+      return driver;
+    }
+
+    return Optional.of(mainClasses.get(0));
+  }
+
+  private static boolean hasTests(ClassFiles.Summary summary, Map<String, ClassFiles.Summary> classes) {
+    final Set<String> visited = new HashSet<>();
+    for (ClassFiles.Summary each = summary;
+        each != null && visited.add(each.getName());
+        each = each.getSuperName() == null ? null : classes.get(each.getSuperName())) {
+      if (each.hasTests() || JUNIT3_TEST_CASE.equals(each.getSuperName())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Map<String, Entry> load() {
+    final Map<String, Entry> entries = new LinkedHashMap<>();
+    if (!Files.exists(indexFile)) {
+      return entries;
+    }
+
+    try {
+      for (String line : Files.readAllLines(indexFile, Constants.ENCODING)) {
+        final List<String> fields = Splitter.on(SEPARATOR).splitToList(line);
+        if (fields.size() == 8) {
+          entries.put(fields.get(0), Entry.parse(fields));
+        }
+      }
+    } catch (IOException | NumberFormatException ignored) {
+      // Every class file is read again
+      entries.clear();
+    }
+    return entries;
+  }
+
+  private void store(Map<String, Entry> entries) {
+    final List<String> lines = new ArrayList<>();
+    entries.forEach((path, entry) -> lines.add(entry.format(path)));
+
+    try {
+      Files.createDirectories(indexFile.getParent());
+      final Path temp =
+          Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+      Files.write(temp, lines, Constants.ENCODING);
+      Files.move(temp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException ignored) {
+      // The next run reads the class files again
+    }
+  }
+
+  private static final class Entry {
+    final long lastModified;
+    final long length;
+    final ClassFiles.Summary summary;
+
+    Entry(long lastModified, long length, ClassFiles.Summary summary) {
+      this.lastModified = lastModified;
+      this.length = length;
+      this.summary = summary;
+    }
+
+    boolean isCurrent(File file) {
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+
+    static Entry read(File file) {
+      try {
+        // Stat before reading, so a concurrent write makes the entry stale rather than wrong
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        return new Entry(
+            lastModified, length, ClassFiles.summarize(Files.readAllBytes(file.toPath())));
+      } catch (IOException e) {
+        return null;
+      }
+    }
+
+    static Entry parse(List<String> fields) {
+      return new Entry(
+          Long.parseLong(fields.get(1)),
+          Long.parseLong(fields.get(2)),
+          new ClassFiles.Summary(
+              fields.get(3),
+              NONE.equals(fields.get(4)) ? null : fields.get(4),
+              Integer.parseInt(fields.get(5)),
+              "1".equals(fields.get(6)),
+              "1".equals(fields.get(7))));
+    }
+
+    String format(String path) {
+      return Joiner.on(SEPARATOR)
+          .join(
+              path,
+              lastModified,
+              length,
+              summary.getName(),
+              Objects.toString(summary.getSuperName(), NONE),
+              summary.getAccess(),
+              summary.hasMain() ? "1" : "0",
+              summary.hasTests() ? "1" : "0");
+    }
+  }
+}
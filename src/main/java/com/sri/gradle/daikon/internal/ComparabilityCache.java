@@ -0,0 +1,125 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.sri.gradle.daikon.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+/**
+ * Content-addressed store of DynComp results, one declarations fragment per class (see {@link
+ * DeclsFile}). A fragment's key hashes the class's fingerprint (see {@link ClassFingerprints}), the
+ * test driver that runs it, and the jars and options DynComp ran with, so a fragment is reused on
+ * any branch and after a clean build as long as none of those changed.
+ */
+public class ComparabilityCache {
+  private static final String FRAGMENT_EXT = ".decls";
+  private static final String HEADER_EXT = ".header";
+
+  private final Path cacheDir;
+  private final ClassFingerprints classFingerprints;
+  private final String toolFingerprint;
+
+  /**
+   * @param cacheDir where fragments are kept; e.g., under the Gradle user home
+   * @param classesDirs the project's class directories
+   * @param toolClasspath the classpath DynComp runs with; its jars are part of every key
+   * @param toolOptions DynComp's options that change its results; e.g., its omit patterns
+   * @param driverClass the test driver DynComp runs
+   */
+  public ComparabilityCache(
+      Path cacheDir,
+      List<File> classesDirs,
+      List<File> toolClasspath,
+      List<String> toolOptions,
+      String driverClass) {
+    this.cacheDir = cacheDir;
+    this.classFingerprints = new ClassFingerprints(classesDirs);
+
+    final Hasher hasher = Hashing.sha256().newHasher();
+    for (File each : toolClasspath) {
+      // Class directories are hashed per class instead
+      if (each.isFile()) {
+        hasher.putString(each.getName(), Constants.ENCODING);
+        hasher.putLong(each.length());
+        hasher.putLong(each.lastModified());
+      }
+    }
+    for (String each : toolOptions) {
+      hasher.putString(each, Constants.ENCODING);
+    }
+    // Only the driver itself; the test classes it lists are hashed per class
+    hasher.putString(driverClass, Constants.ENCODING);
+    hasher.putString(
+        String.valueOf(classFingerprints.classFingerprint(driverClass)), Constants.ENCODING);
+    this.toolFingerprint = hasher.hash().toString();
+  }
+
+  /**
+   * Computes the cache key of a class's comparability results.
+   *
+   * @param className the class's binary name
+   * @return the key, or null if the class file can't be found in the class directories
+   */
+  public String key(String className) {
+    final String fingerprint = classFingerprints.fingerprint(className);
+    if (fingerprint == null) {
+      return null;
+    }
+
+    return Hashing.sha256()
+        .newHasher()
+        .putString(toolFingerprint, Constants.ENCODING)
+        .putString(fingerprint, Constants.ENCODING)
+        .hash()
+        .toString();
+  }
+
+  /**
+   * @param key a key from {@link #key(String)}
+   * @return the cached fragment, possibly empty for a class without program points; null if none
+   */
+  public String load(String key) {
+    return read(cacheDir.resolve(key + FRAGMENT_EXT));
+  }
+
+  public void store(String key, String fragment) throws IOException {
+    write(cacheDir.resolve(key + FRAGMENT_EXT), fragment);
+  }
+
+  /**
+   * @param key a key from {@link #key(String)}
+   * @return the header of the declarations file the key's fragment came from; null if none
+   */
+  public String loadHeader(String key) {
+    return read(cacheDir.resolve(key + HEADER_EXT));
+  }
+
+  public void storeHeader(String key, String header) throws IOException {
+    write(cacheDir.resolve(key + HEADER_EXT), header);
+  }
+
+  private static String read(Path file) {
+    if (!Files.exists(file)) {
+      return null;
+    }
+
+    try {
+      return new String(Files.readAllBytes(file), Constants.ENCODING);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void write(Path file, String content) throws IOException {
+    // Written atomically, since other builds may be reading the cache
+    Files.createDirectories(cacheDir);
+    final Path temp = Files.createTempFile(cacheDir, file.getFileName().toString(), ".tmp");
+    Files.write(temp, content.getBytes(Constants.ENCODING));
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+}
@@ -1,6 +1,8 @@
 package com.sri.gradle.daikon.internal;
 
+import java.io.File;
 import java.nio.file.Path;
+import java.util.List;
 
 public class DaikonExecSpec extends MainExecSpec {
   public void setStandardOutput(Path directory, String filename) {
@@ -10,4 +12,10 @@ public class DaikonExecSpec extends MainExecSpec {
   public void setDtraceFile(Path directory, String filename) {
     args(String.format("%s", relativizeFile(directory, filename)));
   }
+
+  public void setDtraceFiles(Path directory, List<File> files) {
+    for (File each : files) {
+      args(String.format("%s", relativizePath(directory, each.toPath())));
+    }
+  }
 }
@@ -0,0 +1,171 @@
+package com.sri.gradle.daikon.internal;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Long-lived JVM that saves Daikon's jobs the JVM startup. It listens on a loopback socket and
+ * runs one job at a time by calling the tool's {@code mainHelper} method, which, unlike {@code
+ * main}, never calls {@code System.exit}.
+ *
+ * <p>Daikon keeps its state in static fields (e.g., the {@code --ppt-select-pattern} and {@code
+ * --ppt-omit-pattern} regexps, the {@code --config_option} settings, and the program points read
+ * so far), none of which it resets between {@code mainHelper} calls. Each job therefore loads the
+ * tool's classes afresh, in a class loader of its own; only the JDK's classes stay warm.
+ *
+ * <p>Usage: {@code DaikonWorker <port-file> <idle-timeout-minutes> <max-heap> <tool-classpath>},
+ * where {@code <max-heap>} is the {@code -Xmx} the worker was started with, or {@value
+ * #DEFAULT_HEAP}. Once listening, the worker writes {@code <port> <token> <max-heap>} to the port
+ * file; clients must send the token before each job. The worker exits after the idle timeout or on
+ * a {@value #SHUTDOWN} request.
+ *
+ * <p>Protocol, per connection: token, main class, argument count, and arguments (see {@link
+ * #writeString}); arguments may be longer than {@code writeUTF}'s 64KB. The reply is a status ({@value #OK} or {@value #FAILED}) followed by a message.
+ *
+ * <p>Note: this class is the worker's main class, so it must not depend on Gradle or Guava.
+ */
+public class DaikonWorker {
+  public static final String SHUTDOWN = "shutdown";
+  public static final int OK = 0;
+  public static final int FAILED = 1;
+  public static final String DEFAULT_HEAP = "-";
+
+  private DaikonWorker() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length != 4) {
+      throw new IllegalArgumentException(
+          "Usage: DaikonWorker <port-file> <idle-timeout-minutes> <max-heap> <tool-classpath>");
+    }
+
+    final Path portFile = Paths.get(args[0]);
+    final long idleTimeout = TimeUnit.MINUTES.toMillis(Long.parseLong(args[1]));
+    final String token = Long.toHexString(new SecureRandom().nextLong());
+    final String[] entries = args[3].split(File.pathSeparator);
+    final URL[] toolClasspath = new URL[entries.length];
+    for (int idx = 0; idx < entries.length; idx++) {
+      toolClasspath[idx] = Paths.get(entries[idx]).toUri().toURL();
+    }
+
+    try (ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+      server.setSoTimeout((int) Math.min(Integer.MAX_VALUE, idleTimeout));
+      publish(portFile, server.getLocalPort() + " " + token + " " + args[2]);
+
+      while (true) {
+        try (Socket client = server.accept()) {
+          if (!serve(client, token, toolClasspath)) {
+            break;
+          }
+        } catch (SocketTimeoutException idle) {
+          break;
+        } catch (IOException brokenConnection) {
+          // e.g., a client checking that this worker is still alive
+        }
+      }
+    } finally {
+      Files.deleteIfExists(portFile);
+    }
+  }
+
+  private static boolean serve(Socket client, String token, URL[] toolClasspath)
+      throws IOException {
+    final DataInputStream in = new DataInputStream(client.getInputStream());
+    final DataOutputStream out = new DataOutputStream(client.getOutputStream());
+    if (!token.equals(readString(in))) {
+      return true;
+    }
+
+    final String mainClass = readString(in);
+    if (SHUTDOWN.equals(mainClass)) {
+      return false;
+    }
+
+    final String[] toolArgs = new String[in.readInt()];
+    for (int idx = 0; idx < toolArgs.length; idx++) {
+      toolArgs[idx] = readString(in);
+    }
+
+    String failure = null;
+    final PrintStream stdout = System.out;
+    final Thread current = Thread.currentThread();
+    final ClassLoader contextLoader = current.getContextClassLoader();
+    // Parented by the system class loader's parent, so no tool class is shared between jobs
+    try (URLClassLoader toolLoader =
+        new URLClassLoader(toolClasspath, ClassLoader.getSystemClassLoader().getParent())) {
+      // Daikon's progress output is discarded, as with the forked JVMs
+      System.setOut(new PrintStream(new DiscardingOutputStream(), false, "UTF-8"));
+      current.setContextClassLoader(toolLoader);
+      final Method mainHelper =
+          toolLoader.loadClass(mainClass).getMethod("mainHelper", String[].class);
+      mainHelper.invoke(null, (Object) toolArgs);
+    } catch (InvocationTargetException e) {
+      failure = String.valueOf(e.getCause());
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      failure = String.valueOf(e);
+    } finally {
+      current.setContextClassLoader(contextLoader);
+      System.out.flush();
+      System.setOut(stdout);
+    }
+
+    out.writeInt(failure == null ? OK : FAILED);
+    writeString(out, failure == null ? "" : failure);
+    out.flush();
+    return true;
+  }
+
+  /** Writes a string as its UTF-8 byte count followed by the bytes. */
+  public static void writeString(DataOutputStream out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  /** Reads a string written by {@link #writeString}. */
+  public static String readString(DataInputStream in) throws IOException {
+    final int length = in.readInt();
+    if (length < 0) {
+      throw new IOException("Invalid string length " + length);
+    }
+
+    final byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static void publish(Path portFile, String content) throws IOException {
+    // Written atomically so that clients never read a partial file
+    final Path temp = portFile.resolveSibling(portFile.getFileName() + ".tmp");
+    Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+    Files.move(temp, portFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  private static class DiscardingOutputStream extends OutputStream {
+    @Override
+    public void write(int b) {}
+
+    @Override
+    public void write(byte[] b, int off, int len) {}
+  }
+}
@@ -0,0 +1,258 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.base.Joiner;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Hands Daikon, PrintInvariants, and MergeInvariants jobs to a warm {@link DaikonWorker} JVM.
+ *
+ * <p>The worker outlives this service: Gradle closes build services at the end of every build,
+ * but the worker keeps running until it has been idle for {@code idleTimeoutMinutes}. The next
+ * build (in the same daemon or not) finds it again through its port file, which is named after a
+ * hash of the worker's classpath.
+ *
+ * <p>The worker is started with the heap of the job that starts it: the stage's {@code
+ * minHeapSize} and {@code maxHeapSize}, or the estimate of {@code autoHeap}. A job that needs a
+ * larger maximum heap than the running worker has replaces it.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public abstract class DaikonWorkerService
+    implements BuildService<DaikonWorkerService.Params>, AutoCloseable {
+  private static final Logger LOGGER = Logging.getLogger(DaikonWorkerService.class);
+  private static final long STARTUP_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+  public interface Params extends BuildServiceParameters {
+    /** @return daikon.jar and its companion jars */
+    ConfigurableFileCollection getClasspath();
+
+    /** @return where port files and worker logs are kept */
+    DirectoryProperty getWorkerDir();
+
+    Property<Integer> getIdleTimeoutMinutes();
+  }
+
+  /**
+   * Runs a tool's {@code mainHelper} in the worker, starting the worker first if needed. Jobs are
+   * run one at a time since Daikon keeps its state in static fields.
+   *
+   * @param mainClass the tool's main class; e.g., {@code daikon.Daikon}
+   * @param args the tool's arguments; file arguments must be absolute paths
+   * @param minHeapSize the job's initial heap size, or null for the JVM's default
+   * @param maxHeapSize the job's maximum heap size, or null for the JVM's default
+   */
+  public synchronized void run(
+      String mainClass, List<String> args, String minHeapSize, String maxHeapSize) {
+    final WorkerAddress address = connectOrStart(minHeapSize, maxHeapSize);
+    final String failure;
+    try {
+      failure = send(address, mainClass, args);
+    } catch (IOException e) {
+      // Most likely the worker died; e.g., OutOfMemoryError. Next job gets a fresh worker
+      deletePortFile();
+      throw new GradleException("Lost connection to the Daikon worker while running " + mainClass, e);
+    }
+
+    if (failure != null) {
+      // Don't let a half-initialized Daikon leak into the next job
+      shutdown(address);
+      throw new GradleException(mainClass + " failed in the Daikon worker: " + failure);
+    }
+  }
+
+  @Override
+  public void close() {
+    // Intentionally keeps the worker alive for the next build. See class comment.
+  }
+
+  private WorkerAddress connectOrStart(String minHeapSize, String maxHeapSize) {
+    final WorkerAddress running = readPortFile();
+    if (running != null && running.isReachable()) {
+      if (running.fits(maxHeapSize)) {
+        return running;
+      }
+
+      LOGGER.info("Restarting the Daikon worker with a maximum heap of " + maxHeapSize);
+      shutdown(running);
+    }
+
+    deletePortFile();
+    startWorker(minHeapSize, maxHeapSize);
+
+    final long deadline = System.currentTimeMillis() + STARTUP_TIMEOUT_MILLIS;
+    while (System.currentTimeMillis() < deadline) {
+      final WorkerAddress started = readPortFile();
+      if (started != null) {
+        LOGGER.debug("Started Daikon worker on port " + started.port);
+        return started;
+      }
+
+      try {
+        Thread.sleep(100);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new GradleException("Interrupted while starting the Daikon worker", e);
+      }
+    }
+
+    throw new GradleException(
+        "Timed out starting the Daikon worker; see " + getWorkerFile(".log").toAbsolutePath());
+  }
+
+  private void startWorker(String minHeapSize, String maxHeapSize) {
+    // Not on the worker's classpath; each job loads it in a class loader of its own
+    final List<String> toolClasspath = new ArrayList<>();
+    for (File each : getParameters().getClasspath()) {
+      toolClasspath.add(each.getAbsolutePath());
+    }
+
+    final List<String> command = new ArrayList<>();
+    command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+    if (minHeapSize != null) {
+      command.add("-Xms" + minHeapSize);
+    }
+    if (maxHeapSize != null) {
+      command.add("-Xmx" + maxHeapSize);
+    }
+    command.add("-cp");
+    command.add(ChicoryAgentArgumentProvider.getAgentJar().getAbsolutePath());
+    command.add(DaikonWorker.class.getName());
+    command.add(getWorkerFile(".port").toAbsolutePath().toString());
+    command.add(String.valueOf(getParameters().getIdleTimeoutMinutes().get()));
+    command.add(maxHeapSize == null ? DaikonWorker.DEFAULT_HEAP : maxHeapSize);
+    command.add(Joiner.on(File.pathSeparator).join(toolClasspath));
+
+    try {
+      Files.createDirectories(getWorkerFile(".port").getParent());
+      final File log = getWorkerFile(".log").toFile();
+      new ProcessBuilder(command)
+          .redirectErrorStream(true)
+          .redirectOutput(log)
+          .start();
+    } catch (IOException e) {
+      throw new GradleException("Unable to start the Daikon worker", e);
+    }
+  }
+
+  private void shutdown(WorkerAddress address) {
+    try {
+      send(address, DaikonWorker.SHUTDOWN, new ArrayList<>());
+    } catch (IOException ignored) {
+      // Already gone
+    }
+    deletePortFile();
+  }
+
+  private static String send(WorkerAddress address, String mainClass, List<String> args)
+      throws IOException {
+    try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), address.port)) {
+      final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+      DaikonWorker.writeString(out, address.token);
+      DaikonWorker.writeString(out, mainClass);
+      if (!DaikonWorker.SHUTDOWN.equals(mainClass)) {
+        out.writeInt(args.size());
+        for (String each : args) {
+          DaikonWorker.writeString(out, each);
+        }
+      }
+      out.flush();
+
+      if (DaikonWorker.SHUTDOWN.equals(mainClass)) {
+        return null;
+      }
+
+      final DataInputStream in = new DataInputStream(socket.getInputStream());
+      final int status = in.readInt();
+      final String message = DaikonWorker.readString(in);
+      return status == DaikonWorker.OK ? null : message;
+    }
+  }
+
+  private WorkerAddress readPortFile() {
+    final Path portFile = getWorkerFile(".port");
+    if (!Files.exists(portFile)) {
+      return null;
+    }
+
+    try {
+      final String[] content =
+          new String(Files.readAllBytes(portFile), StandardCharsets.UTF_8).trim().split(" ");
+      // Workers from older versions of this plugin write no heap size, and are left to idle out
+      return content.length == 3
+          ? new WorkerAddress(Integer.parseInt(content[0]), content[1], content[2])
+          : null;
+    } catch (IOException | NumberFormatException e) {
+      return null;
+    }
+  }
+
+  private void deletePortFile() {
+    try {
+      Files.deleteIfExists(getWorkerFile(".port"));
+    } catch (IOException ignored) {
+    }
+  }
+
+  private Path getWorkerFile(String extension) {
+    // One worker per distinct classpath; e.g., per Daikon version
+    final Hasher hasher = Hashing.sha256().newHasher();
+    for (File each : getParameters().getClasspath()) {
+      hasher.putString(each.getAbsolutePath(), StandardCharsets.UTF_8);
+      hasher.putLong(each.lastModified());
+    }
+
+    final String name = "worker-" + hasher.hash().toString().substring(0, 16) + extension;
+    return getParameters().getWorkerDir().get().getAsFile().toPath().resolve(name);
+  }
+
+  private static class WorkerAddress {
+    final int port;
+    final String token;
+    final String maxHeapSize;
+
+    WorkerAddress(int port, String token, String maxHeapSize) {
+      this.port = port;
+      this.token = token;
+      this.maxHeapSize = maxHeapSize;
+    }
+
+    boolean fits(String jobHeapSize) {
+      if (jobHeapSize == null) {
+        return true;
+      }
+
+      return !DaikonWorker.DEFAULT_HEAP.equals(maxHeapSize)
+          && MemoryBudgetService.parseHeapSize(jobHeapSize)
+              <= MemoryBudgetService.parseHeapSize(maxHeapSize);
+    }
+
+    boolean isReachable() {
+      try (Socket ignored = new Socket(InetAddress.getLoopbackAddress(), port)) {
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+  }
+}
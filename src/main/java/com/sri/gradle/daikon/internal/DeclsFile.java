@@ -0,0 +1,155 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.base.Joiner;
+import com.sri.gradle.daikon.Constants;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A DynComp declarations file (decls format 2.0), split into its header and one fragment per
+ * class. A fragment holds the {@code ppt} blocks of a class's program points.
+ */
+public class DeclsFile {
+  public static final String DEFAULT_HEADER =
+      "decl-version 2.0\ninput-language java\nvar-comparability implicit\n";
+
+  private static final String PPT = "ppt ";
+  private static final String PPT_SEPARATOR = ":::";
+  private static final String COMPARABILITY = "comparability ";
+  // Negative comparabilities mean "comparable to everything" and are kept as is
+  private static final Pattern COMPARABILITY_ID = Pattern.compile("(?<![-\\d])\\d+");
+
+  private final String header;
+  private final Map<String, String> fragments;
+
+  public DeclsFile(String header, Map<String, String> fragments) {
+    this.header = header;
+    this.fragments = fragments;
+  }
+
+  /**
+   * Reads a declarations file and splits it by class.
+   *
+   * @param declsFile the file written by DynComp
+   * @return the split file
+   * @throws IOException if the file can't be read
+   */
+  public static DeclsFile read(Path declsFile) throws IOException {
+    final List<String> header = new ArrayList<>();
+    final Map<String, List<String>> blocks = new LinkedHashMap<>();
+
+    List<String> current = null;
+    for (String line : Files.readAllLines(declsFile, Constants.ENCODING)) {
+      if (line.startsWith(PPT)) {
+        current = blocks.computeIfAbsent(className(line.substring(PPT.length())), k -> new ArrayList<>());
+      } else if (line.trim().isEmpty()) {
+        current = null;
+        continue;
+      }
+
+      if (current == null) {
+        header.add(line);
+      } else {
+        current.add(line);
+      }
+    }
+
+    final Map<String, String> fragments = new LinkedHashMap<>();
+    blocks.forEach((className, lines) -> fragments.put(className, joinBlocks(lines)));
+    return new DeclsFile(Joiner.on('\n').join(header) + "\n", fragments);
+  }
+
+  /**
+   * Writes a header and class fragments as one declarations file.
+   *
+   * <p>Fragments may come from different DynComp runs, whose comparability ids would otherwise
+   * clash, so each fragment's ids are shifted past those of the fragments before it.
+   *
+   * @param header the file header
+   * @param fragments the class fragments, in output order
+   * @param declsFile where to write
+   * @throws IOException if the file can't be written
+   */
+  public static void write(String header, Collection<String> fragments, Path declsFile)
+      throws IOException {
+    final StringBuilder content = new StringBuilder(header);
+    long offset = 0;
+    for (String each : fragments) {
+      if (each.isEmpty()) {
+        continue;
+      }
+
+      long maxId = offset;
+      content.append('\n');
+      for (String line : each.split("\n", -1)) {
+        if (!line.trim().startsWith(COMPARABILITY)) {
+          content.append(line).append('\n');
+          continue;
+        }
+
+        final Matcher matcher = COMPARABILITY_ID.matcher(line);
+        final StringBuffer shifted = new StringBuffer();
+        while (matcher.find()) {
+          final long id = Long.parseLong(matcher.group()) + offset;
+          maxId = Math.max(maxId, id);
+          matcher.appendReplacement(shifted, String.valueOf(id));
+        }
+        matcher.appendTail(shifted);
+        content.append(shifted).append('\n');
+      }
+      // split keeps the empty string after the fragment's last newline
+      content.setLength(content.length() - 1);
+      offset = maxId + 1;
+    }
+
+    Files.write(declsFile, content.toString().getBytes(Constants.ENCODING));
+  }
+
+  /**
+   * Extracts the class of a program point; e.g., {@code com.foo.Bar} from {@code
+   * com.foo.Bar.baz(int):::ENTER} or {@code com.foo.Bar:::OBJECT}.
+   *
+   * @param pptName the program point name
+   * @return the class's binary name
+   */
+  public static String className(String pptName) {
+    final int separator = pptName.indexOf(PPT_SEPARATOR);
+    final String declaration = separator < 0 ? pptName : pptName.substring(0, separator);
+    final int params = declaration.indexOf('(');
+    if (params < 0) {
+      return declaration;
+    }
+
+    final String method = declaration.substring(0, params);
+    return method.substring(0, Math.max(0, method.lastIndexOf('.')));
+  }
+
+  public String getHeader() {
+    return header;
+  }
+
+  /** @return fragments by class binary name, in file order */
+  public Map<String, String> getFragments() {
+    return fragments;
+  }
+
+  private static String joinBlocks(List<String> lines) {
+    final StringBuilder fragment = new StringBuilder();
+    for (String line : lines) {
+      // Keeps a blank line between ppt blocks
+      if (line.startsWith(PPT) && fragment.length() > 0) {
+        fragment.append('\n');
+      }
+      fragment.append(line).append('\n');
+    }
+    return fragment.toString();
+  }
+}
@@ -0,0 +1,167 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.utils.ClassFiles;
+import com.sri.gradle.daikon.utils.Filefinder;
+import com.sri.gradle.daikon.utils.ImmutableStream;
+import com.sri.gradle.daikon.utils.MoreFiles;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Directory listings shared by every task of a build, so that the same tree is walked once
+ * instead of once per task. A listing is reused for as long as the modification times of the
+ * directories it walked are unchanged; e.g., the test classes directory is walked again after
+ * compileTestJava adds or removes a class.
+ *
+ * <p>A file system can't tell two changes within the same timestamp tick apart, so a listing
+ * whose directories changed within a tick of the walk is not reused. Whole-second timestamps
+ * are taken as a sign of a coarse (up to 2 seconds) file system.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public abstract class DirectoryScanService
+    implements BuildService<BuildServiceParameters.None>, AutoCloseable {
+  // Coarsest common file system timestamp granularity (FAT has 2 seconds)
+  private static final long COARSE_GRANULARITY_MILLIS = 2000;
+  private static final long FINE_GRANULARITY_MILLIS = 1;
+
+  private final Map<String, Listing> listings = new ConcurrentHashMap<>();
+
+  public List<File> findJavaFiles(Path directory, String... exclude) {
+    return listing(directory, "java", exclude).files;
+  }
+
+  public List<File> findJavaClasses(Path directory, String... exclude) {
+    return listing(directory, "class", exclude).files;
+  }
+
+  public List<File> findJavaJars(Path directory, String... exclude) {
+    return listing(directory, "jar", exclude).files;
+  }
+
+  public List<File> findTextFiles(Path directory, String... exclude) {
+    return listing(directory, "txt", exclude).files;
+  }
+
+  public List<File> findAnyFiles(Path directory, String... exclude) {
+    return listing(directory, "*", exclude).files;
+  }
+
+  /**
+   * Same as {@link MoreFiles#getTestClassNames(List)} on the non-nested classes of a directory,
+   * but the directory is canonicalized once instead of once per class file.
+   *
+   * @param testClassesDir a directory under the project's test classes directory
+   * @return the binary names of its classes
+   */
+  public List<String> getTestClassNames(Path testClassesDir) {
+    final Listing listing =
+        listing(testClassesDir, "class", "$" /*exclude those that contain this symbol*/);
+    if (listing.testClassNames == null) {
+      listing.testClassNames = testClassNames(testClassesDir, listing.files);
+    }
+    return listing.testClassNames;
+  }
+
+  /**
+   * Summarizes the classes of a directory, reading class files through an index that only reads
+   * them again once they change.
+   *
+   * @param classesDir the directory, searched recursively
+   * @param index the project's class index
+   * @return summaries by class binary name
+   */
+  public Map<String, ClassFiles.Summary> summarizeClasses(Path classesDir, ClassIndex index) {
+    final Listing listing = listing(classesDir, "class");
+    if (listing.classSummaries == null) {
+      listing.classSummaries = index.summarize(listing.files);
+    }
+    return listing.classSummaries;
+  }
+
+  private Listing listing(Path directory, String extension, String... exclude) {
+    Objects.requireNonNull(directory);
+
+    final Path absolute = directory.toAbsolutePath().normalize();
+    final String key = absolute + File.pathSeparator + extension + Arrays.toString(exclude);
+
+    // Several tasks may ask for the same listing at once; only one of them walks the tree
+    return listings.compute(
+        key,
+        (ignored, cached) ->
+            cached != null && cached.isCurrent() ? cached : walk(absolute, extension, exclude));
+  }
+
+  private static Listing walk(Path directory, String extension, String... exclude) {
+    final long walkedAt = System.currentTimeMillis();
+    final Map<Path, Long> visitedDirectories = new HashMap<>();
+    final List<File> files = Filefinder.findFiles(directory, extension, visitedDirectories, exclude);
+    return new Listing(files, visitedDirectories, walkedAt);
+  }
+
+  private static List<String> testClassNames(Path testClassesDir, List<File> classFiles) {
+    final String canonicalDir;
+    try {
+      canonicalDir = testClassesDir.toFile().getCanonicalPath();
+    } catch (IOException e) {
+      return MoreFiles.getTestClassNames(classFiles);
+    }
+
+    final Path absolute = testClassesDir.toAbsolutePath().normalize();
+    return ImmutableStream.listCopyOf(
+        classFiles.stream()
+            .map(
+                f ->
+                    MoreFiles.getClassName(
+                        canonicalDir + File.separator + absolute.relativize(f.toPath()),
+                        Constants.PROJECT_TEST_CLASS_DIR,
+                        ".class")));
+  }
+
+  @Override
+  public void close() {
+    listings.clear();
+  }
+
+  private static class Listing {
+    final List<File> files;
+    final Map<Path, Long> visitedDirectories;
+    final boolean racy;
+    volatile List<String> testClassNames;
+    volatile Map<String, ClassFiles.Summary> classSummaries;
+
+    Listing(List<File> files, Map<Path, Long> visitedDirectories, long walkedAt) {
+      this.files = ImmutableList.copyOf(files);
+      this.visitedDirectories = visitedDirectories;
+      this.racy =
+          visitedDirectories.isEmpty()
+              || visitedDirectories.values().stream()
+                  .anyMatch(modified -> modified >= walkedAt - granularity(modified));
+    }
+
+    private static long granularity(long modified) {
+      return modified % 1000 == 0 ? COARSE_GRANULARITY_MILLIS : FINE_GRANULARITY_MILLIS;
+    }
+
+    boolean isCurrent() {
+      if (racy) return false;
+
+      for (Map.Entry<Path, Long> each : visitedDirectories.entrySet()) {
+        final File dir = each.getKey().toFile();
+        if (!dir.isDirectory() || dir.lastModified() != each.getValue()) return false;
+      }
+
+      return true;
+    }
+  }
+}
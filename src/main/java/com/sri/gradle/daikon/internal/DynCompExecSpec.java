@@ -1,9 +1,17 @@
 package com.sri.gradle.daikon.internal;
 
+import java.io.File;
 import java.nio.file.Path;
 
 public class DynCompExecSpec extends MainExecSpec {
   public void setOutputDirectory(Path directory) {
     args(String.format("--output_dir=%s", directory));
   }
+
+  public void setRuntimeJar(File runtimeJar) {
+    // Otherwise DynComp looks for dcomp_rt.jar on its classpath
+    if (runtimeJar != null) {
+      args(String.format("--rt-file=%s", runtimeJar.getAbsolutePath()));
+    }
+  }
 }
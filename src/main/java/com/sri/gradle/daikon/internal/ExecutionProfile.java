@@ -0,0 +1,72 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+/**
+ * Named trade-offs between the fidelity of the invariants and the time it takes to infer them:
+ *
+ * <ul>
+ *   <li>{@value #PREVIEW}: DynComp is skipped, so Chicory takes variables of the same declared type
+ *       as comparable. Chicory records each program point's first {@value #PREVIEW_SAMPLE_START}
+ *       executions and samples the rest, and Daikon derives no variables.
+ *   <li>{@value #STANDARD} (the default): every stage runs with the tools' defaults.
+ *   <li>{@value #THOROUGH}: DynComp and Chicory look into structures one level deeper than by
+ *       default.
+ * </ul>
+ */
+public class ExecutionProfile {
+  public static final String PREVIEW = "preview";
+  public static final String STANDARD = "standard";
+  public static final String THOROUGH = "thorough";
+
+  static final int PREVIEW_SAMPLE_START = 100;
+  static final int THOROUGH_NESTING_DEPTH = 3;
+
+  private ExecutionProfile() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  /** @return whether the profile runs DynComp */
+  public static boolean runsDynComp(String profile) {
+    return !PREVIEW.equals(check(profile));
+  }
+
+  /** @return extra DynComp options of the profile */
+  public static List<String> dynCompOptions(String profile) {
+    return THOROUGH.equals(check(profile))
+        ? ImmutableList.of("--nesting-depth=" + THOROUGH_NESTING_DEPTH)
+        : ImmutableList.of();
+  }
+
+  /** @return extra Chicory options of the profile */
+  public static List<String> chicoryOptions(String profile) {
+    switch (check(profile)) {
+      case PREVIEW:
+        return ImmutableList.of("--sample-start=" + PREVIEW_SAMPLE_START);
+      case THOROUGH:
+        // Must match DynComp's, or the comparability file misses the deeper variables
+        return ImmutableList.of("--nesting-depth=" + THOROUGH_NESTING_DEPTH);
+      default:
+        return ImmutableList.of();
+    }
+  }
+
+  /** @return extra Daikon options of the profile */
+  public static List<String> daikonOptions(String profile) {
+    return PREVIEW.equals(check(profile))
+        ? ImmutableList.of(
+            "--config_option=daikon.derive.Derivation.disable_derived_variables=true",
+            "--no_text_output")
+        : ImmutableList.of();
+  }
+
+  private static String check(String profile) {
+    if (PREVIEW.equals(profile) || STANDARD.equals(profile) || THOROUGH.equals(profile)) {
+      return profile;
+    }
+
+    throw new IllegalArgumentException(
+        "Unknown profile " + profile + "; use " + PREVIEW + ", " + STANDARD + ", or " + THOROUGH);
+  }
+}
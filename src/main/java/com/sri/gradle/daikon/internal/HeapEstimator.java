@@ -0,0 +1,162 @@
+package com.sri.gradle.daikon.internal;
+
+import com.sri.gradle.daikon.Constants;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Picks a max heap for Daikon and PrintInvariants from the size of their input, the number of
+ * program points seen last time, the peak heap recorded last time (see {@link
+ * PeakHeapRecorder}), and the machine's (or container's) memory limit.
+ */
+public class HeapEstimator {
+  private static final long MB = 1L << 20;
+  private static final long MIN_HEAP = 256 * MB;
+  private static final long BASE_HEAP = 512 * MB;
+  // Without history: gzip'ed traces expand ~10x, and Daikon keeps a fraction of the samples
+  private static final long HEAP_PER_INPUT_BYTE = 8;
+  private static final long HEAP_PER_PROGRAM_POINT = MB;
+  private static final double HEADROOM = 1.5;
+
+  private static final String[] CGROUP_LIMIT_FILES = {
+    "/sys/fs/cgroup/memory.max", // cgroup v2
+    "/sys/fs/cgroup/memory/memory.limit_in_bytes" // cgroup v1
+  };
+
+  private HeapEstimator() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  /**
+   * Estimates a max heap.
+   *
+   * @param inputBytes size of the tool's input
+   * @param programPoints program points in the last invariants text file; 0 if unknown
+   * @param history the last run's usage
+   * @param memoryLimit bytes available to the build
+   * @return the max heap, in bytes
+   */
+  public static long estimate(
+      long inputBytes, long programPoints, HeapHistory history, long memoryLimit) {
+    long estimate;
+    if (history.getPeakHeapBytes() > 0) {
+      // Scale what was actually used by how much the inputs grew since
+      double growth = 1.0;
+      if (history.getInputBytes() > 0) {
+        growth = Math.max(growth, (double) inputBytes / history.getInputBytes());
+      }
+      if (history.getProgramPoints() > 0 && programPoints > 0) {
+        growth = Math.max(growth, (double) programPoints / history.getProgramPoints());
+      }
+      estimate = (long) (history.getPeakHeapBytes() * growth * HEADROOM);
+    } else {
+      estimate =
+          BASE_HEAP + inputBytes * HEAP_PER_INPUT_BYTE + programPoints * HEAP_PER_PROGRAM_POINT;
+    }
+
+    // Leave room for the Gradle daemon, the JVM's own overhead, and the OS
+    final long ceiling = Math.max(MIN_HEAP, memoryLimit / 4 * 3);
+    return Math.min(ceiling, Math.max(MIN_HEAP, estimate));
+  }
+
+  /**
+   * @param bytes a heap size in bytes
+   * @return the size in JVM heap size syntax, in whole megabytes; e.g., {@code 1536m}
+   */
+  public static String toHeapSize(long bytes) {
+    return ((bytes + MB - 1) / MB) + "m";
+  }
+
+  /** @return the container's cgroup memory limit, or the physical memory if there is none */
+  public static long memoryLimitBytes() {
+    final long physical = physicalMemoryBytes();
+    for (String each : CGROUP_LIMIT_FILES) {
+      final Path limitFile = Paths.get(each);
+      if (!Files.isReadable(limitFile)) {
+        continue;
+      }
+
+      try {
+        final String limit =
+            new String(Files.readAllBytes(limitFile), StandardCharsets.UTF_8).trim();
+        // "max" (v2) or a huge number (v1) means unlimited
+        if (!"max".equals(limit) && Long.parseLong(limit) < physical) {
+          return Long.parseLong(limit);
+        }
+      } catch (IOException | NumberFormatException ignored) {
+      }
+    }
+
+    return physical;
+  }
+
+  /**
+   * Counts the program points in a PrintInvariants text file.
+   *
+   * @param invariantsTextFile the .inv.txt file
+   * @return the number of program points; 0 if the file doesn't exist
+   */
+  public static long countProgramPoints(Path invariantsTextFile) {
+    if (!Files.exists(invariantsTextFile)) {
+      return 0;
+    }
+
+    long count = 0;
+    try (BufferedReader reader = Files.newBufferedReader(invariantsTextFile, Constants.ENCODING)) {
+      // true when the next line is the name of a program point
+      boolean expectPpName = false;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        // Separator lines also close the file, so only count the names that follow them
+        if (expectPpName && line.contains(":::")) {
+          count++;
+        }
+        expectPpName = line.contains(Constants.DAIKON_SPLITTER);
+      }
+    } catch (IOException e) {
+      return 0;
+    }
+
+    return count;
+  }
+
+  /**
+   * Reads the peak heaps appended by {@link PeakHeapRecorder}.
+   *
+   * @param peakHeapFile the file
+   * @return the largest recorded peak; 0 if none
+   */
+  public static long readPeakHeap(Path peakHeapFile) {
+    if (!Files.exists(peakHeapFile)) {
+      return 0;
+    }
+
+    try {
+      final List<String> lines = Files.readAllLines(peakHeapFile, StandardCharsets.UTF_8);
+      return lines.stream()
+          .map(String::trim)
+          .filter(line -> !line.isEmpty())
+          .mapToLong(Long::parseLong)
+          .max()
+          .orElse(0);
+    } catch (IOException | NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  private static long physicalMemoryBytes() {
+    final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+    if (os instanceof com.sun.management.OperatingSystemMXBean) {
+      return ((com.sun.management.OperatingSystemMXBean) os).getTotalPhysicalMemorySize();
+    }
+
+    return Runtime.getRuntime().maxMemory();
+  }
+}
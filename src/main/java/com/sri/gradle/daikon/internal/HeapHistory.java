@@ -0,0 +1,77 @@
+package com.sri.gradle.daikon.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/** What a stage's tool consumed the last time it ran. See {@link HeapEstimator}. */
+public class HeapHistory {
+  public static final HeapHistory NONE = new HeapHistory(0, 0, 0);
+
+  private static final String INPUT_BYTES = "inputBytes";
+  private static final String PROGRAM_POINTS = "programPoints";
+  private static final String PEAK_HEAP_BYTES = "peakHeapBytes";
+
+  private final long inputBytes;
+  private final long programPoints;
+  private final long peakHeapBytes;
+
+  public HeapHistory(long inputBytes, long programPoints, long peakHeapBytes) {
+    this.inputBytes = inputBytes;
+    this.programPoints = programPoints;
+    this.peakHeapBytes = peakHeapBytes;
+  }
+
+  /** @return size of the tool's input; e.g., of the dtrace files */
+  public long getInputBytes() {
+    return inputBytes;
+  }
+
+  /** @return number of program points in the last invariants text file */
+  public long getProgramPoints() {
+    return programPoints;
+  }
+
+  /** @return the largest heap actually used by the tool's JVMs; 0 if unknown */
+  public long getPeakHeapBytes() {
+    return peakHeapBytes;
+  }
+
+  /**
+   * Reads a history file.
+   *
+   * @param file the history file
+   * @return the history, or {@link #NONE} if the file is missing or unreadable
+   */
+  public static HeapHistory load(Path file) {
+    if (!Files.exists(file)) {
+      return NONE;
+    }
+
+    final Properties properties = new Properties();
+    try (InputStream in = Files.newInputStream(file)) {
+      properties.load(in);
+      return new HeapHistory(
+          Long.parseLong(properties.getProperty(INPUT_BYTES, "0")),
+          Long.parseLong(properties.getProperty(PROGRAM_POINTS, "0")),
+          Long.parseLong(properties.getProperty(PEAK_HEAP_BYTES, "0")));
+    } catch (IOException | NumberFormatException e) {
+      return NONE;
+    }
+  }
+
+  public void save(Path file) throws IOException {
+    final Properties properties = new Properties();
+    properties.setProperty(INPUT_BYTES, String.valueOf(inputBytes));
+    properties.setProperty(PROGRAM_POINTS, String.valueOf(programPoints));
+    properties.setProperty(PEAK_HEAP_BYTES, String.valueOf(peakHeapBytes));
+
+    Files.createDirectories(file.getParent());
+    try (OutputStream out = Files.newOutputStream(file)) {
+      properties.store(out, "Daikon heap usage");
+    }
+  }
+}
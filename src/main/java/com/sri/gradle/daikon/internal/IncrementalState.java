@@ -0,0 +1,103 @@
+package com.sri.gradle.daikon.internal;
+
+import com.sri.gradle.daikon.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Per-class invariants of the last incremental run, plus the fingerprint (see {@link
+ * ClassFingerprints}) each class had when its invariants were inferred. A class needs new
+ * invariants when its fingerprint changed or its invariants file is gone.
+ */
+public class IncrementalState {
+  private static final String FINGERPRINTS_FILE = "fingerprints.properties";
+
+  private final Path stateDir;
+  private final ClassFingerprints classFingerprints;
+
+  /**
+   * @param stateDir where the per-class invariants and their fingerprints are kept
+   * @param classesDirs the project's class directories
+   */
+  public IncrementalState(Path stateDir, List<File> classesDirs) {
+    this.stateDir = stateDir;
+    this.classFingerprints = new ClassFingerprints(classesDirs);
+  }
+
+  /**
+   * @param classes the classes to check; e.g., all test classes
+   * @return the classes whose invariants must be inferred again, in the given order
+   */
+  public List<String> changedClasses(List<String> classes) {
+    final Properties previous = loadFingerprints();
+    final List<String> changed = new ArrayList<>();
+    for (String each : classes) {
+      final String fingerprint = classFingerprints.fingerprint(each);
+      if (fingerprint == null
+          || !fingerprint.equals(previous.getProperty(each))
+          || !Files.exists(invariantsFile(each))) {
+        changed.add(each);
+      }
+    }
+    return changed;
+  }
+
+  /**
+   * @param className a class's binary name
+   * @return where the class's invariants are kept
+   */
+  public Path invariantsFile(String className) {
+    return stateDir.resolve(className + Constants.INV_EXT);
+  }
+
+  /**
+   * Records the current fingerprints of the given classes and forgets any other class, deleting
+   * its invariants file.
+   *
+   * @param classes the classes whose invariants are up to date
+   * @throws IOException if the state can't be written
+   */
+  public void save(List<String> classes) throws IOException {
+    final Properties previous = loadFingerprints();
+    for (String each : previous.stringPropertyNames()) {
+      if (!classes.contains(each)) {
+        Files.deleteIfExists(invariantsFile(each));
+      }
+    }
+
+    final Properties fingerprints = new Properties();
+    for (String each : classes) {
+      final String fingerprint = classFingerprints.fingerprint(each);
+      if (fingerprint != null) {
+        fingerprints.setProperty(each, fingerprint);
+      }
+    }
+
+    Files.createDirectories(stateDir);
+    try (OutputStream out = Files.newOutputStream(stateDir.resolve(FINGERPRINTS_FILE))) {
+      fingerprints.store(out, "Class fingerprints of the last incremental Daikon run");
+    }
+  }
+
+  private Properties loadFingerprints() {
+    final Properties fingerprints = new Properties();
+    final Path file = stateDir.resolve(FINGERPRINTS_FILE);
+    if (!Files.exists(file)) {
+      return fingerprints;
+    }
+
+    try (InputStream in = Files.newInputStream(file)) {
+      fingerprints.load(in);
+    } catch (IOException ignored) {
+      // Everything counts as changed
+    }
+    return fingerprints;
+  }
+}
@@ -0,0 +1,93 @@
+package com.sri.gradle.daikon.internal;
+
+import com.sri.gradle.daikon.Constants;
+import java.nio.charset.StandardCharsets;
+import javax.inject.Inject;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.process.ExecOperations;
+import org.gradle.process.ExecResult;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Forks a JVM from a Gradle worker thread, one per work item. Used for every tool when stages run
+ * as work items: DynComp and Chicory call {@code System.exit} when done, and Daikon,
+ * MergeInvariants, and PrintInvariants keep their settings in static fields, so none of them can
+ * share a JVM with another work item.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public abstract class JavaExecWorkAction implements WorkAction<JavaExecWorkAction.Params> {
+
+  public interface Params extends WorkParameters {
+    Property<String> getMainClass();
+
+    ListProperty<String> getArgs();
+
+    ConfigurableFileCollection getClasspath();
+
+    DirectoryProperty getWorkingDir();
+
+    ListProperty<String> getJvmArgs();
+
+    Property<String> getMinHeapSize();
+
+    Property<String> getMaxHeapSize();
+
+    /** @return whether the forked tool starts the traced program in a JVM of its own */
+    Property<Boolean> getLaunchesTracedJvm();
+
+    /** @return the traced JVM's max heap; unset if undeclared */
+    Property<String> getTracedHeapSize();
+
+    /** @return admits the forked JVM; unset to fork right away */
+    Property<MemoryBudgetService> getMemoryBudget();
+  }
+
+  @Inject
+  public abstract ExecOperations getExecOperations();
+
+  @Override
+  public void execute() {
+    final Params params = getParameters();
+    final MemoryBudgetService.Lease lease;
+    if (!params.getMemoryBudget().isPresent()) {
+      lease = MemoryBudgetService.Lease.NONE;
+    } else if (params.getLaunchesTracedJvm().getOrElse(false)) {
+      // DynComp and Chicory: charged for the traced program's JVM too
+      lease =
+          params
+              .getMemoryBudget()
+              .get()
+              .acquire(
+                  params.getMainClass().get(),
+                  params.getMaxHeapSize().getOrNull(),
+                  params.getTracedHeapSize().getOrNull());
+    } else {
+      lease =
+          params
+              .getMemoryBudget()
+              .get()
+              .acquire(params.getMainClass().get(), params.getMaxHeapSize().getOrNull());
+    }
+
+    final ExecResult result;
+    try (MemoryBudgetService.Lease ignored = lease) {
+      result = getExecOperations().javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setWorkingDir(params.getWorkingDir().get().getAsFile());
+        spec.setClasspath(params.getClasspath());
+        spec.setMain(params.getMainClass().get());
+        spec.setArgs(params.getArgs().get());
+        spec.setJvmArgs(params.getJvmArgs().get());
+        spec.setMinHeapSize(params.getMinHeapSize().getOrNull());
+        spec.setMaxHeapSize(params.getMaxHeapSize().getOrNull());
+        spec.setDefaultCharacterEncoding(StandardCharsets.UTF_8.name());
+      });
+    }
+
+    result.assertNormalExitValue();
+  }
+}
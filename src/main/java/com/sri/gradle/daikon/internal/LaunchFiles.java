@@ -0,0 +1,123 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.hash.Hashing;
+import com.sri.gradle.daikon.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+
+/**
+ * Files that keep the command lines of forked tools short: argument files (see {@link
+ * ArgumentFileMain}) and manifest-only pathing jars, whose {@code Class-Path} attribute stands for
+ * the whole classpath. Both are named after a hash of their content, so forks running at the same
+ * time with the same content share a file, and a file is only written once.
+ */
+public class LaunchFiles {
+  private LaunchFiles() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  /**
+   * @param classpath classpath entries, possibly repeated or missing
+   * @return the entries that exist, each once, in the order they first appear
+   */
+  public static List<File> dedupe(Collection<File> classpath) {
+    final Set<File> entries = new LinkedHashSet<>();
+    for (File each : classpath) {
+      final File entry = each.getAbsoluteFile().toPath().normalize().toFile();
+      if (entry.exists()) {
+        entries.add(entry);
+      }
+    }
+    return new ArrayList<>(entries);
+  }
+
+  /** @return the length the classpath takes on a command line */
+  public static int length(List<File> classpath) {
+    return classpath.stream().mapToInt(f -> f.getPath().length() + 1).sum();
+  }
+
+  /** @return the length the arguments take on a command line */
+  public static int argumentsLength(List<String> args) {
+    return args.stream().mapToInt(a -> a.length() + 1).sum();
+  }
+
+  /**
+   * @param lines the main class, then its arguments; none may contain a line break
+   * @param dir where launch files are kept
+   * @return the argument file
+   * @throws IOException if the file can't be written
+   */
+  public static File argumentFile(List<String> lines, Path dir) throws IOException {
+    for (String each : lines) {
+      if (each.indexOf('\n') >= 0 || each.indexOf('\r') >= 0) {
+        throw new IllegalArgumentException("Argument spans several lines: " + each);
+      }
+    }
+
+    final String content = String.join("\n", lines) + "\n";
+    final Path file = dir.resolve("args-" + hash(content) + ".txt");
+    if (!Files.exists(file)) {
+      Files.createDirectories(dir);
+      final Path temp = Files.createTempFile(dir, "args", ".tmp");
+      Files.write(temp, content.getBytes(Constants.ENCODING));
+      move(temp, file);
+    }
+    return file.toFile();
+  }
+
+  /**
+   * @param classpath the classpath the jar stands for
+   * @param dir where launch files are kept
+   * @return a jar holding only a manifest whose {@code Class-Path} lists the classpath
+   * @throws IOException if the jar can't be written
+   */
+  public static File pathingJar(List<File> classpath, Path dir) throws IOException {
+    // Directories need a trailing slash, which File.toURI adds for existing ones
+    final String classPath =
+        classpath.stream().map(f -> f.toURI().toString()).collect(Collectors.joining(" "));
+    final Path jar = dir.resolve("classpath-" + hash(classPath) + ".jar");
+    if (!Files.exists(jar)) {
+      final Manifest manifest = new Manifest();
+      manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+      manifest.getMainAttributes().put(Attributes.Name.CLASS_PATH, classPath);
+
+      Files.createDirectories(dir);
+      final Path temp = Files.createTempFile(dir, "classpath", ".tmp");
+      try (OutputStream out = Files.newOutputStream(temp);
+          JarOutputStream ignored = new JarOutputStream(out, manifest)) {
+        // Only the manifest
+      }
+      move(temp, jar);
+    }
+    return jar.toFile();
+  }
+
+  private static String hash(String content) {
+    return Hashing.sha256().hashString(content, Constants.ENCODING).toString().substring(0, 16);
+  }
+
+  private static void move(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      // e.g., a concurrent fork wrote the same file first
+      Files.deleteIfExists(temp);
+      if (!Files.exists(target)) {
+        throw e;
+      }
+    }
+  }
+}
@@ -2,6 +2,7 @@ package com.sri.gradle.daikon.internal;
 
 import com.google.common.base.Preconditions;
 import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.extensions.StageForkOptions;
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
@@ -21,6 +22,13 @@ public class MainExecSpec {
   private String main;
   private Object[] args = new Object[0];
   private File workingDirectory = Constants.USER_WORKING_DIR;
+  private boolean absolutePaths = false;
+  private List<String> jvmArgs = new ArrayList<>();
+  private String minHeapSize;
+  private String maxHeapSize;
+  private boolean launchesTracedJvm = false;
+  private String tracedHeapSize;
+  private File peakHeapFile;
 
   public void args(Object... args) {
     this.args = Stream.concat(Arrays.stream(this.args), Arrays.stream(args))
@@ -35,6 +43,32 @@ public class MainExecSpec {
     return args;
   }
 
+  public List<String> getJvmArgs() {
+    return jvmArgs;
+  }
+
+  public String getMinHeapSize() {
+    return minHeapSize;
+  }
+
+  public String getMaxHeapSize() {
+    return maxHeapSize;
+  }
+
+  /** @return whether the tool starts the traced program in a JVM of its own */
+  public boolean launchesTracedJvm() {
+    return launchesTracedJvm;
+  }
+
+  /** @return the traced JVM's max heap; null if undeclared or there is no traced JVM */
+  public String getTracedHeapSize() {
+    return tracedHeapSize;
+  }
+
+  public File getPeakHeapFile() {
+    return peakHeapFile;
+  }
+
   public FileCollection getClasspath() {
     return classpath;
   }
@@ -51,9 +85,28 @@ public class MainExecSpec {
     return workingDirectory;
   }
 
+  public boolean isAbsolutePaths(){
+    return absolutePaths;
+  }
+
   protected Path relativizeFile(Path directory, String filename){
     final Path resolved = directory.resolve(filename);
-    return directory.relativize(resolved);
+    return relativizePath(directory, resolved);
+  }
+
+  protected Path relativizePath(Path directory, Path file){
+    // A warm worker JVM shares one working directory across jobs
+    return absolutePaths ? file.toAbsolutePath() : directory.relativize(file);
+  }
+
+  /**
+   * Makes file arguments absolute instead of relative to the working directory. Needed when the
+   * tool runs in a JVM whose working directory can't be set per job (see {@link DaikonWorker}).
+   *
+   * @param absolutePaths whether file arguments are absolute
+   */
+  public void setAbsolutePaths(boolean absolutePaths){
+    this.absolutePaths = absolutePaths;
   }
 
   public void setArgs(Object... args) {
@@ -69,16 +122,49 @@ public class MainExecSpec {
   }
 
   public void setForkOptions(){
+    setForkOptions(null);
+  }
+
+  /**
+   * Configures the tool's JVM.
+   *
+   * @param stageOptions the stage's settings from the build script; null for the defaults
+   */
+  public void setForkOptions(StageForkOptions stageOptions){
     final ForkOptions options = new ForkOptions();
+    // Also kept here for stages forked through the Worker API, which can't take fork actions
+    this.jvmArgs = options.getJvmArgs() == null ? new ArrayList<>() : options.getJvmArgs();
+    this.minHeapSize = options.getMemoryInitialSize();
+    this.maxHeapSize = options.getMemoryMaximumSize();
+    if (stageOptions != null) {
+      this.jvmArgs = stageOptions.getAllJvmArgs();
+      this.minHeapSize = stageOptions.getMinHeapSize().getOrElse(minHeapSize);
+      this.maxHeapSize = stageOptions.getMaxHeapSize().getOrElse(maxHeapSize);
+    }
+
     forkOptions(fork -> {
       fork.setWorkingDir(getWorkingDir());
-      fork.setJvmArgs(options.getJvmArgs());
-      fork.setMinHeapSize(options.getMemoryInitialSize());
-      fork.setMaxHeapSize(options.getMemoryMaximumSize());
+      fork.setJvmArgs(getJvmArgs());
+      fork.setMinHeapSize(getMinHeapSize());
+      fork.setMaxHeapSize(getMaxHeapSize());
       fork.setDefaultCharacterEncoding(StandardCharsets.UTF_8.name());
     });
   }
 
+  public void setMaxHeapSize(String maxHeapSize){
+    this.maxHeapSize = maxHeapSize;
+  }
+
+  /**
+   * Runs the tool through {@link PeakHeapRecorder}, which appends the JVM's peak heap usage to
+   * the given file.
+   *
+   * @param peakHeapFile the file; null to run the tool directly
+   */
+  public void setPeakHeapFile(File peakHeapFile){
+    this.peakHeapFile = peakHeapFile;
+  }
+
   public void setMain(String main) {
     this.main = main;
   }
@@ -94,6 +180,12 @@ public class MainExecSpec {
     }
   }
 
+  public void setOmitPatterns(List<String> omitPatterns) {
+    for (String each : omitPatterns) {
+      args("--ppt-omit-pattern=" + each);
+    }
+  }
+
   public void setSelectedClasses(String... fullyQualifiedClassNames) {
     setSelectPatterns(Arrays.asList(fullyQualifiedClassNames));
   }
@@ -102,6 +194,20 @@ public class MainExecSpec {
     setSelectPatterns(fullyQualifiedClassNames);
   }
 
+  public void setToolOptions(List<String> toolOptions) {
+    // DynComp and Chicory: must precede the target class
+    args(toolOptions.toArray());
+  }
+
+  public void setTracedHeapSize(StageForkOptions stageOptions) {
+    // DynComp and Chicory only; must precede the target class
+    this.launchesTracedJvm = true;
+    if (stageOptions != null && stageOptions.getTracedHeapSize().isPresent()) {
+      this.tracedHeapSize = stageOptions.getTracedHeapSize().get();
+      args("--heap-size=" + tracedHeapSize);
+    }
+  }
+
   public void setTargetClass(String targetClass) {
     Preconditions.checkArgument(targetClass != null && !targetClass.isEmpty());
     args(targetClass);
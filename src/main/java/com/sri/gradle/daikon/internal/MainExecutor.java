@@ -1,30 +1,165 @@
 package com.sri.gradle.daikon.internal;
 
+import com.google.common.collect.ImmutableList;
 import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.extensions.StageForkOptions;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
+import java.util.stream.Collectors;
 import org.gradle.api.Action;
+import org.gradle.api.GradleException;
 import org.gradle.api.Project;
 import org.gradle.api.file.FileCollection;
 import org.gradle.process.ExecResult;
+import org.gradle.workers.WorkerExecutor;
 
 public class MainExecutor {
   private final Project project;
+  private final DaikonWorkerService worker;
+  private final WorkerExecutor workerExecutor;
+  private final MemoryBudgetService memoryBudget;
+  private final StageForkOptions forkOptions;
+  private String estimatedHeapSize;
+  private File peakHeapFile;
+  private List<String> omitPatterns = ImmutableList.of();
+  private List<String> toolOptions = ImmutableList.of();
+  private boolean comparability = true;
+  private File sharedArchive;
+  private File archivedJar;
+  private boolean warnedAboutWorker = false;
 
   public MainExecutor(Project project){
+    this(project, null, null, null, null);
+  }
+
+  /**
+   * @param project the project running the tools
+   * @param worker warm JVM for Daikon, PrintInvariants, and MergeInvariants jobs; null to fork a
+   *     new JVM per job
+   * @param workerExecutor when non-null, tools are submitted as Gradle work items and the exec
+   *     methods return before the tools finish (see {@link #await()}); otherwise, they block
+   * @param memoryBudget admits forked JVMs based on their max heap; null to fork right away
+   * @param forkOptions JVM settings of the stage these tools belong to; null for the defaults
+   */
+  public MainExecutor(Project project, DaikonWorkerService worker, WorkerExecutor workerExecutor, MemoryBudgetService memoryBudget, StageForkOptions forkOptions){
     this.project = project;
+    this.worker = worker;
+    this.workerExecutor = workerExecutor;
+    this.memoryBudget = memoryBudget;
+    this.forkOptions = forkOptions;
+  }
+
+  /**
+   * Sizes the heap of the Daikon, PrintInvariants, and MergeInvariants JVMs started from now on,
+   * overriding the stage's max heap, and records their peak heap usage.
+   *
+   * @param maxHeapSize the estimated max heap; e.g., {@code 1536m}
+   * @param peakHeapFile where each JVM appends its peak heap usage
+   */
+  public void useEstimatedHeap(String maxHeapSize, File peakHeapFile){
+    this.estimatedHeapSize = maxHeapSize;
+    this.peakHeapFile = peakHeapFile;
+  }
+
+  /**
+   * Keeps DynComp and Chicory, when started from now on, from instrumenting the program points
+   * these patterns match.
+   *
+   * @param omitPatterns {@code --ppt-omit-pattern} regexes
+   */
+  public void useOmitPatterns(List<String> omitPatterns){
+    this.omitPatterns = ImmutableList.copyOf(omitPatterns);
+  }
+
+  /**
+   * Passes extra options to DynComp, Chicory, and Daikon when started from now on; see {@link
+   * ExecutionProfile}.
+   *
+   * @param toolOptions the options, ahead of the tool's file arguments
+   */
+  public void useToolOptions(List<String> toolOptions){
+    this.toolOptions = ImmutableList.copyOf(toolOptions);
+  }
+
+  /**
+   * @param comparability whether Chicory, when started from now on, reads the comparability file
+   *     written by DynComp; without it, variables of the same declared type are comparable
+   */
+  public void useComparability(boolean comparability){
+    this.comparability = comparability;
+  }
+
+  /**
+   * Starts the tools' JVMs from now on with a class data sharing archive of daikon.jar, built by
+   * {@link com.sri.gradle.daikon.tasks.BuildCdsArchive}. Forks whose classpath has no daikon.jar,
+   * or is replaced with a pathing jar, start without it, as they do while the archive is missing.
+   *
+   * @param sharedArchive the archive
+   * @param archivedJar the copy of daikon.jar the archive was built from
+   */
+  public void useSharedArchive(File sharedArchive, File archivedJar){
+    this.sharedArchive = sharedArchive;
+    this.archivedJar = archivedJar;
+  }
+
+  /** Waits for all submitted work items; a no-op when tools run synchronously. */
+  public void await(){
+    if (workerExecutor != null) {
+      workerExecutor.await();
+    }
   }
 
   public void execChicory(List<File> classPath, List<String> allClassnames, String targetClass, String classNamePrefix, Path outputDir){
+    final File premainJar = directLaunchJar(classPath, classNamePrefix);
+    if (premainJar != null) {
+      execChicory(new DirectChicoryExecSpecAction(
+          project,
+          classPath,
+          allClassnames,
+          targetClass,
+          classNamePrefix,
+          premainJar,
+          omitPatterns,
+          toolOptions,
+          comparability,
+          forkOptions,
+          outputDir
+      ));
+      return;
+    }
+
+    execChicory(new ChicoryExecSpecAction(
+        project,
+        classPath,
+        allClassnames,
+        targetClass,
+        classNamePrefix,
+        false,
+        omitPatterns,
+        toolOptions,
+        comparability,
+        forkOptions,
+        outputDir
+    ));
+  }
+
+  public void execChicoryOnline(List<File> classPath, List<String> allClassnames, String targetClass, String classNamePrefix, Path outputDir){
     execChicory(new ChicoryExecSpecAction(
         project,
         classPath,
         allClassnames,
         targetClass,
         classNamePrefix,
+        true,
+        omitPatterns,
+        toolOptions,
+        comparability,
+        forkOptions,
         outputDir
     ));
   }
@@ -38,22 +173,54 @@ public class MainExecutor {
 
   public void execChicory(ChicoryExecSpec chicorySpec){
     Objects.requireNonNull(chicorySpec);
-    final FileCollection fullClasspath = chicorySpec.getClasspath();
-    project.javaexec(spec -> {
-      spec.setStandardOutput(Constants.QUIET_OUTPUT);
-      spec.setWorkingDir(chicorySpec.getWorkingDir());
-      spec.setClasspath(fullClasspath);
-      spec.setMain(Constants.CHICORY_MAIN_CLASS);
-      spec.setArgs(Arrays.asList(chicorySpec.getArgs()));
-      chicorySpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
-    });
+    // The target class itself when Chicory's premain is attached directly
+    final String mainClass = chicorySpec.getMain() == null ? Constants.CHICORY_MAIN_CLASS : chicorySpec.getMain();
+    if (submitJavaExec(mainClass, chicorySpec)) {
+      return;
+    }
+
+    final Launch launch = launch(mainClass, chicorySpec);
+    try (MemoryBudgetService.Lease ignored = admit(mainClass, chicorySpec)) {
+      project.javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setWorkingDir(chicorySpec.getWorkingDir());
+        spec.setClasspath(launch.classpath);
+        spec.setMain(launch.main);
+        spec.setArgs(launch.args);
+        chicorySpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
+        spec.jvmArgs(launch.jvmArgs);
+      });
+    }
   }
 
   public void execDaikon(String classNamePrefix, List<File> classPath, Path outputDir){
+    execDaikon(
+        classNamePrefix,
+        classPath,
+        ImmutableList.of(outputDir.resolve(classNamePrefix + Constants.DTRACE_EXT).toFile()),
+        outputDir
+    );
+  }
+
+  public void execDaikon(String classNamePrefix, List<File> classPath, List<File> dtraceFiles, Path outputDir){
+    execDaikon(
+        classPath,
+        dtraceFiles,
+        ImmutableList.of(),
+        classNamePrefix + Constants.INV_EXT,
+        outputDir
+    );
+  }
+
+  public void execDaikon(List<File> classPath, List<File> dtraceFiles, List<String> selectedClasses, String invariantsFileName, Path outputDir){
     execDaikon(new DaikonExecSpecAction(
         project,
-        classNamePrefix,
         classPath,
+        dtraceFiles,
+        selectedClasses,
+        invariantsFileName,
+        toolOptions,
+        forkOptions,
         outputDir
     ));
   }
@@ -61,21 +228,32 @@ public class MainExecutor {
   public void execDaikon(Action<DaikonExecSpec> action){
     Objects.requireNonNull(action);
     final DaikonExecSpec spec = new DaikonExecSpec();
+    spec.setAbsolutePaths(worker != null);
     action.execute(spec);
+    applyEstimatedHeap(spec);
     execDaikon(spec);
   }
 
   public void execDaikon(DaikonExecSpec daikonSpec){
     Objects.requireNonNull(daikonSpec);
-    final FileCollection fullClasspath = daikonSpec.getClasspath();
-    final ExecResult result = project.javaexec(spec -> {
-      spec.setStandardOutput(Constants.QUIET_OUTPUT);
-      spec.setWorkingDir(daikonSpec.getWorkingDir());
-      spec.setClasspath(fullClasspath);
-      spec.setMain(Constants.DAIKON_MAIN_CLASS);
-      spec.setArgs(Arrays.asList(daikonSpec.getArgs()));
-      daikonSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
-    });
+    if (runInWorker(Constants.DAIKON_MAIN_CLASS, daikonSpec)
+        || submitJavaExec(Constants.DAIKON_MAIN_CLASS, daikonSpec)) {
+      return;
+    }
+
+    final Launch launch = launch(Constants.DAIKON_MAIN_CLASS, daikonSpec);
+    final ExecResult result;
+    try (MemoryBudgetService.Lease ignored = admit(Constants.DAIKON_MAIN_CLASS, daikonSpec)) {
+      result = project.javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setWorkingDir(daikonSpec.getWorkingDir());
+        spec.setClasspath(launch.classpath);
+        spec.setMain(launch.main);
+        spec.setArgs(launch.args);
+        daikonSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
+        spec.jvmArgs(launch.jvmArgs);
+      });
+    }
 
     if (result.toString().contains("Usage:")){
       project.getLogger().debug("Checking daikon.jar is in the classpath; "
@@ -88,10 +266,16 @@ public class MainExecutor {
   }
 
   public void execPrintDaikonInfo(List<File> classPath, String classNamePrefix, Path outputDir){
+    execPrintDaikonInfo(classPath, classNamePrefix + Constants.INV_EXT, classNamePrefix, outputDir);
+  }
+
+  public void execPrintDaikonInfo(List<File> classPath, String invariantsFileName, String classNamePrefix, Path outputDir){
     execPrintDaikonInfo(new PrintInvariantsExecSpecAction(
         project,
         classPath,
+        invariantsFileName,
         classNamePrefix,
+        forkOptions,
         outputDir
     ));
   }
@@ -99,32 +283,325 @@ public class MainExecutor {
   public void execPrintDaikonInfo(Action<PrintInvariantsExecSpec> action){
     Objects.requireNonNull(action);
     final PrintInvariantsExecSpec spec = new PrintInvariantsExecSpec();
+    spec.setAbsolutePaths(worker != null);
     action.execute(spec);
+    applyEstimatedHeap(spec);
     execPrintDaikonInfo(spec);
   }
 
   public void execPrintDaikonInfo(PrintInvariantsExecSpec printSpec){
     Objects.requireNonNull(printSpec);
-    final FileCollection fullClasspath = printSpec.getClasspath();
-    final ExecResult result = project.javaexec(spec -> {
-      spec.setStandardOutput(Constants.QUIET_OUTPUT);
-      spec.setWorkingDir(printSpec.getWorkingDir());
-      spec.setClasspath(fullClasspath);
-      spec.setMain(Constants.PRINT_INVARIANTS_MAIN_CLASS);
-      spec.setArgs(Arrays.asList(printSpec.getArgs()));
-      printSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
-    });
+    if (runInWorker(Constants.PRINT_INVARIANTS_MAIN_CLASS, printSpec)
+        || submitJavaExec(Constants.PRINT_INVARIANTS_MAIN_CLASS, printSpec)) {
+      return;
+    }
+
+    final Launch launch = launch(Constants.PRINT_INVARIANTS_MAIN_CLASS, printSpec);
+    final ExecResult result;
+    try (MemoryBudgetService.Lease ignored = admit(Constants.PRINT_INVARIANTS_MAIN_CLASS, printSpec)) {
+      result = project.javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setWorkingDir(printSpec.getWorkingDir());
+        spec.setClasspath(launch.classpath);
+        spec.setMain(launch.main);
+        spec.setArgs(launch.args);
+        printSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
+        spec.jvmArgs(launch.jvmArgs);
+      });
+    }
 
     result.assertNormalExitValue();
   }
 
+  public void execMergeInvariants(List<File> classPath, List<File> invariantsFiles, String invariantsFileName, Path outputDir){
+    execMergeInvariants(new MergeInvariantsExecSpecAction(
+        project,
+        classPath,
+        invariantsFiles,
+        invariantsFileName,
+        forkOptions,
+        outputDir
+    ));
+  }
+
+  public void execMergeInvariants(Action<MergeInvariantsExecSpec> action){
+    Objects.requireNonNull(action);
+    final MergeInvariantsExecSpec spec = new MergeInvariantsExecSpec();
+    spec.setAbsolutePaths(worker != null);
+    action.execute(spec);
+    applyEstimatedHeap(spec);
+    execMergeInvariants(spec);
+  }
+
+  public void execMergeInvariants(MergeInvariantsExecSpec mergeSpec){
+    Objects.requireNonNull(mergeSpec);
+    if (runInWorker(Constants.MERGE_INVARIANTS_MAIN_CLASS, mergeSpec)
+        || submitJavaExec(Constants.MERGE_INVARIANTS_MAIN_CLASS, mergeSpec)) {
+      return;
+    }
+
+    final Launch launch = launch(Constants.MERGE_INVARIANTS_MAIN_CLASS, mergeSpec);
+    final ExecResult result;
+    try (MemoryBudgetService.Lease ignored = admit(Constants.MERGE_INVARIANTS_MAIN_CLASS, mergeSpec)) {
+      result = project.javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setWorkingDir(mergeSpec.getWorkingDir());
+        spec.setClasspath(launch.classpath);
+        spec.setMain(launch.main);
+        spec.setArgs(launch.args);
+        mergeSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
+        spec.jvmArgs(launch.jvmArgs);
+      });
+    }
+
+    result.assertNormalExitValue();
+  }
+
+  private boolean runInWorker(String mainClass, MainExecSpec mainSpec){
+    // Specs with relative file arguments need their own working directory; i.e., a forked JVM
+    if (worker == null || !mainSpec.isAbsolutePaths()) {
+      return false;
+    }
+
+    warnAboutWorker(mainSpec);
+    worker.run(mainClass, Arrays.stream(mainSpec.getArgs())
+        .map(String::valueOf)
+        .collect(Collectors.toList()), mainSpec.getMinHeapSize(), mainSpec.getMaxHeapSize());
+    return true;
+  }
+
+  private void warnAboutWorker(MainExecSpec mainSpec){
+    // The worker is started once, with the heap of its first job only
+    final List<String> ignored = new ArrayList<>();
+    if (memoryBudget != null) {
+      ignored.add("memoryBudget");
+    }
+    if (forkOptions != null && !forkOptions.getAllJvmArgs().isEmpty()) {
+      ignored.add("jvmArgs and garbageCollector");
+    }
+    if (mainSpec.getPeakHeapFile() != null) {
+      ignored.add("the peak heap recording of autoHeap");
+    }
+    if (!warnedAboutWorker && !ignored.isEmpty()) {
+      project.getLogger().warn("The Daikon worker ignores " + String.join(", ", ignored) + "; set daikonWorker = false to apply them");
+      warnedAboutWorker = true;
+    }
+  }
+
+  private MemoryBudgetService.Lease admit(String mainClass, MainExecSpec mainSpec){
+    if (memoryBudget == null) {
+      return MemoryBudgetService.Lease.NONE;
+    }
+
+    // DynComp and Chicory: the traced program's JVM is running for as long as the launcher
+    return mainSpec.launchesTracedJvm()
+        ? memoryBudget.acquire(mainClass, mainSpec.getMaxHeapSize(), mainSpec.getTracedHeapSize())
+        : memoryBudget.acquire(mainClass, mainSpec.getMaxHeapSize());
+  }
+
+  private void applyEstimatedHeap(MainExecSpec mainSpec){
+    if (estimatedHeapSize != null) {
+      mainSpec.setMaxHeapSize(estimatedHeapSize);
+      mainSpec.setPeakHeapFile(peakHeapFile);
+    }
+  }
+
+  private String launchMain(String mainClass, MainExecSpec mainSpec){
+    return mainSpec.getPeakHeapFile() == null ? mainClass : PeakHeapRecorder.class.getName();
+  }
+
+  private List<String> launchArgs(String mainClass, MainExecSpec mainSpec){
+    final List<String> args = new ArrayList<>();
+    if (mainSpec.getPeakHeapFile() != null) {
+      args.add(mainSpec.getPeakHeapFile().getAbsolutePath());
+      args.add(mainClass);
+    }
+
+    Arrays.stream(mainSpec.getArgs()).map(String::valueOf).forEach(args::add);
+    return args;
+  }
+
+  private FileCollection launchClasspath(MainExecSpec mainSpec){
+    // PeakHeapRecorder is part of this plugin's jar
+    return mainSpec.getPeakHeapFile() == null
+        ? mainSpec.getClasspath()
+        : project.files(mainSpec.getClasspath(), ChicoryAgentArgumentProvider.getAgentJar());
+  }
+
+  /**
+   * Main class, arguments, extra JVM arguments, and classpath of a forked tool. The classpath is
+   * deduplicated, and whatever doesn't fit on a command line goes to launch files; see {@link
+   * LaunchFiles}.
+   */
+  private Launch launch(String mainClass, MainExecSpec mainSpec){
+    String main = launchMain(mainClass, mainSpec);
+    List<String> args = launchArgs(mainClass, mainSpec);
+    final List<File> classpath = LaunchFiles.dedupe(launchClasspath(mainSpec).getFiles());
+    final boolean pathingJar = (forkOptions != null && forkOptions.getPathingJar().get())
+        || LaunchFiles.length(classpath) > Constants.MAX_INLINE_LENGTH;
+    if (pathingJar) {
+      args.addAll(0, agentJarArgs(mainClass, classpath, args));
+    }
+
+    final List<String> jvmArgs = new ArrayList<>();
+    if (!pathingJar && useArchivedJar(classpath, sharedArchive, archivedJar)) {
+      jvmArgs.add("-XX:SharedArchiveFile=" + sharedArchive.getAbsolutePath());
+    }
+
+    final Path launchDir = project.getLayout()
+        .getBuildDirectory()
+        .dir(Constants.LAUNCH_FILES_DIR)
+        .get()
+        .getAsFile()
+        .toPath();
+    final File pluginLocation = ChicoryAgentArgumentProvider.getPluginLocation();
+    final int argumentsLength = LaunchFiles.argumentsLength(args);
+    if (argumentsLength > Constants.MAX_INLINE_LENGTH && pluginLocation == null) {
+      // ArgumentFileMain is loaded from the plugin's own jar or classes directory
+      project.getLogger().warn("The arguments of " + mainClass + " take " + argumentsLength
+          + " characters, but can't be moved to an argument file since the Daikon plugin's location is unknown; "
+          + "the command line may be too long for the operating system");
+    }
+
+    try {
+      if (argumentsLength > Constants.MAX_INLINE_LENGTH && pluginLocation != null) {
+        final List<String> lines = new ArrayList<>();
+        lines.add(main);
+        lines.addAll(args);
+        args = ImmutableList.of(LaunchFiles.argumentFile(lines, launchDir).getAbsolutePath());
+        main = ArgumentFileMain.class.getName();
+        classpath.add(pluginLocation);
+      }
+
+      final List<File> launchClasspath = pathingJar
+          ? ImmutableList.of(LaunchFiles.pathingJar(classpath, launchDir))
+          : classpath;
+      return new Launch(main, args, jvmArgs, project.files(launchClasspath));
+    } catch (IOException e) {
+      throw new GradleException("Unable to write the launch files of " + mainClass, e);
+    }
+  }
+
+  /**
+   * Swaps daikon.jar on a classpath for the copy a class data sharing archive was built from.
+   *
+   * @param classpath the classpath; modified in place
+   * @param sharedArchive the archive; null if there is none
+   * @param archivedJar the copy of daikon.jar the archive was built from
+   * @return true if the archive can be mapped
+   */
+  static boolean useArchivedJar(List<File> classpath, File sharedArchive, File archivedJar){
+    if (sharedArchive == null || !sharedArchive.isFile() || !archivedJar.isFile()) {
+      return false;
+    }
+
+    final File daikonJar = findJar(classpath, Constants.DAIKON_JAR_FILE);
+    if (daikonJar == null) {
+      return false;
+    }
+
+    // The JVM only maps the archive if the jar it was built from leads the classpath
+    classpath.remove(daikonJar);
+    classpath.add(0, archivedJar);
+    return true;
+  }
+
+  private static List<String> agentJarArgs(String mainClass, List<File> classpath, List<String> args){
+    // DynComp and Chicory look for their jars on java.class.path, which a pathing jar hides
+    final List<String> agentArgs = new ArrayList<>();
+    if (Constants.CHICORY_MAIN_CLASS.equals(mainClass)) {
+      addJarArg(agentArgs, args, "--premain=", classpath, Constants.CHICORY_JAR_FILE, Constants.DAIKON_JAR_FILE);
+    } else if (Constants.DYN_COMP_MAIN_CLASS.equals(mainClass)) {
+      addJarArg(agentArgs, args, "--premain=", classpath, Constants.DYN_COMP_PRE_MAIN_JAR_FILE, Constants.DAIKON_JAR_FILE);
+      addJarArg(agentArgs, args, "--rt-file=", classpath, Constants.DYN_COMP_RT_JAR_FILE);
+    }
+    return agentArgs;
+  }
+
+  private static void addJarArg(List<String> agentArgs, List<String> args, String option, List<File> classpath, String... jarNames){
+    if (args.stream().anyMatch(each -> each.startsWith(option))) {
+      return;
+    }
+
+    final File jar = findJar(classpath, jarNames);
+    if (jar != null) {
+      agentArgs.add(option + jar.getAbsolutePath());
+    }
+  }
+
+  private static File findJar(List<File> classpath, String... jarNames){
+    // In the same order of preference as the tools themselves
+    for (String jarName : jarNames) {
+      for (File each : classpath) {
+        if (each.getName().equals(jarName)) {
+          return each;
+        }
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return the jar of Chicory's premain agent, if the traced JVM is to be started with it
+   *     attached instead of through Chicory's launcher; otherwise null
+   */
+  private File directLaunchJar(List<File> classPath, String classNamePrefix){
+    if (forkOptions == null || !forkOptions.getDirectLaunch().get()) {
+      return null;
+    }
+
+    // Both jars name Chicory's premain in their manifest. Its options are split at spaces, and
+    // the file options are named after the prefix.
+    final File premainJar = findJar(classPath, Constants.CHICORY_JAR_FILE, Constants.DAIKON_JAR_FILE);
+    if (premainJar == null || classNamePrefix.contains(" ")) {
+      project.getLogger().info("Unable to attach Chicory's premain agent directly; using Chicory's launcher");
+      return null;
+    }
+    return premainJar;
+  }
+
+  private boolean submitJavaExec(String mainClass, MainExecSpec mainSpec){
+    if (workerExecutor == null) {
+      return false;
+    }
+
+    // A worker thread that forks the tool is enough to keep the task thread free. Daikon and its
+    // companions keep their settings in static fields, so each work item gets a JVM of its own
+    // rather than a reused worker process or classloader.
+    final Launch launch = launch(mainClass, mainSpec);
+    workerExecutor.noIsolation().submit(JavaExecWorkAction.class, params -> {
+      params.getMainClass().set(launch.main);
+      params.getArgs().set(launch.args);
+      params.getClasspath().from(launch.classpath);
+      params.getWorkingDir().set(mainSpec.getWorkingDir());
+      params.getJvmArgs().set(mainSpec.getJvmArgs());
+      params.getJvmArgs().addAll(launch.jvmArgs);
+      params.getMinHeapSize().set(mainSpec.getMinHeapSize());
+      params.getMaxHeapSize().set(mainSpec.getMaxHeapSize());
+      params.getLaunchesTracedJvm().set(mainSpec.launchesTracedJvm());
+      params.getTracedHeapSize().set(mainSpec.getTracedHeapSize());
+      if (memoryBudget != null) {
+        params.getMemoryBudget().set(memoryBudget);
+      }
+    });
+    return true;
+  }
+
   public void execDynComp(List<File> classPath, List<String> allClassnames, String targetClass, Path testClassDir, Path outputDir){
+    execDynComp(classPath, allClassnames, targetClass, testClassDir, null, outputDir);
+  }
+
+  public void execDynComp(List<File> classPath, List<String> allClassnames, String targetClass, Path testClassDir, File runtimeJar, Path outputDir){
     execDynComp(new DynCompExecSpecAction(
         project,
         classPath,
         allClassnames,
         targetClass,
         testClassDir,
+        runtimeJar,
+        omitPatterns,
+        toolOptions,
+        forkOptions,
         outputDir
     ));
   }
@@ -138,15 +615,59 @@ public class MainExecutor {
 
   public void execDynComp(DynCompExecSpec dynCompSpec){
     Objects.requireNonNull(dynCompSpec);
-    final FileCollection fullClasspath = dynCompSpec.getClasspath();
-    final ExecResult result = project.javaexec(spec -> {
-      spec.setStandardOutput(Constants.QUIET_OUTPUT);
-      spec.setWorkingDir(dynCompSpec.getWorkingDir());
-      spec.setClasspath(fullClasspath);
-      spec.setMain(Constants.DYN_COMP_MAIN_CLASS);
-      spec.setArgs(Arrays.asList(dynCompSpec.getArgs()));
-      dynCompSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
-    });
+    if (submitJavaExec(Constants.DYN_COMP_MAIN_CLASS, dynCompSpec)) {
+      return;
+    }
+
+    final Launch launch = launch(Constants.DYN_COMP_MAIN_CLASS, dynCompSpec);
+    final ExecResult result;
+    try (MemoryBudgetService.Lease ignored = admit(Constants.DYN_COMP_MAIN_CLASS, dynCompSpec)) {
+      result = project.javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setWorkingDir(dynCompSpec.getWorkingDir());
+        spec.setClasspath(launch.classpath);
+        spec.setMain(launch.main);
+        spec.setArgs(launch.args);
+        dynCompSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
+        spec.jvmArgs(launch.jvmArgs);
+      });
+    }
+
+    result.assertNormalExitValue();
+  }
+
+  public void execBuildJdk(List<File> classPath, Path outputDir){
+    execBuildJdk(new BuildJdkExecSpecAction(
+        project,
+        classPath,
+        forkOptions,
+        outputDir
+    ));
+  }
+
+  public void execBuildJdk(Action<BuildJdkExecSpec> action){
+    Objects.requireNonNull(action);
+    final BuildJdkExecSpec spec = new BuildJdkExecSpec();
+    action.execute(spec);
+    execBuildJdk(spec);
+  }
+
+  public void execBuildJdk(BuildJdkExecSpec buildJdkSpec){
+    Objects.requireNonNull(buildJdkSpec);
+    // Runs once per JDK, so it always blocks
+    final Launch launch = launch(Constants.BUILD_JDK_MAIN_CLASS, buildJdkSpec);
+    final ExecResult result;
+    try (MemoryBudgetService.Lease ignored = admit(Constants.BUILD_JDK_MAIN_CLASS, buildJdkSpec)) {
+      result = project.javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setWorkingDir(buildJdkSpec.getWorkingDir());
+        spec.setClasspath(launch.classpath);
+        spec.setMain(launch.main);
+        spec.setArgs(launch.args);
+        buildJdkSpec.getConfigureFork().forEach(forkAction -> forkAction.execute(spec));
+        spec.jvmArgs(launch.jvmArgs);
+      });
+    }
 
     result.assertNormalExitValue();
   }
@@ -159,14 +680,22 @@ public class MainExecutor {
     private final List<String> allClassnames;
     private final String targetClass;
     private final Path testClassDir;
+    private final File runtimeJar;
+    private final List<String> omitPatterns;
+    private final List<String> toolOptions;
+    private final StageForkOptions forkOptions;
     private final Path outputDir;
 
-    public DynCompExecSpecAction(Project project, List<File> classPath, List<String> allClassnames, String targetClass, Path testClassDir, Path outputDir){
+    public DynCompExecSpecAction(Project project, List<File> classPath, List<String> allClassnames, String targetClass, Path testClassDir, File runtimeJar, List<String> omitPatterns, List<String> toolOptions, StageForkOptions forkOptions, Path outputDir){
       this.project = project;
       this.classPath = classPath;
       this.allClassnames = allClassnames;
       this.targetClass = targetClass;
       this.testClassDir = testClassDir;
+      this.runtimeJar = runtimeJar;
+      this.omitPatterns = omitPatterns;
+      this.toolOptions = toolOptions;
+      this.forkOptions = forkOptions;
       this.outputDir = outputDir;
     }
 
@@ -176,8 +705,35 @@ public class MainExecutor {
       spec.setClasspath(project.files(classPath));
       spec.setMain(Constants.DYN_COMP_MAIN_CLASS);
       spec.setSelectedClasses(allClassnames);
+      spec.setOmitPatterns(omitPatterns);
+      spec.setRuntimeJar(runtimeJar);
+      spec.setToolOptions(toolOptions);
+      spec.setTracedHeapSize(forkOptions);
       spec.setTargetClass(targetClass);
-      spec.setForkOptions();
+      spec.setForkOptions(forkOptions);
+    }
+  }
+
+  static class BuildJdkExecSpecAction implements Action<BuildJdkExecSpec> {
+
+    private final Project project;
+    private final List<File> classPath;
+    private final StageForkOptions forkOptions;
+    private final Path outputDir;
+
+    BuildJdkExecSpecAction(Project project, List<File> classPath, StageForkOptions forkOptions, Path outputDir){
+      this.project = project;
+      this.classPath = classPath;
+      this.forkOptions = forkOptions;
+      this.outputDir = outputDir;
+    }
+
+    @Override public void execute(BuildJdkExecSpec spec) {
+      spec.setWorkingDir(outputDir);
+      spec.setClasspath(project.files(classPath));
+      spec.setMain(Constants.BUILD_JDK_MAIN_CLASS);
+      spec.setOutputDirectory(outputDir);
+      spec.setForkOptions(forkOptions);
     }
   }
 
@@ -188,14 +744,24 @@ public class MainExecutor {
     private final List<String> allClassnames;
     private final String targetClass;
     private final String classNamePrefix;
+    private final boolean daikonOnline;
+    private final List<String> omitPatterns;
+    private final List<String> toolOptions;
+    private final boolean comparability;
+    private final StageForkOptions forkOptions;
     private final Path outputDir;
 
-    public ChicoryExecSpecAction(Project project, List<File> classPath, List<String> allClassnames, String targetClass, String classNamePrefix, Path outputDir){
+    public ChicoryExecSpecAction(Project project, List<File> classPath, List<String> allClassnames, String targetClass, String classNamePrefix, boolean daikonOnline, List<String> omitPatterns, List<String> toolOptions, boolean comparability, StageForkOptions forkOptions, Path outputDir){
       this.project = project;
       this.classPath = classPath;
       this.allClassnames = allClassnames;
       this.targetClass = targetClass;
       this.classNamePrefix = classNamePrefix;
+      this.daikonOnline = daikonOnline;
+      this.omitPatterns = omitPatterns;
+      this.toolOptions = toolOptions;
+      this.comparability = comparability;
+      this.forkOptions = forkOptions;
       this.outputDir = outputDir;
     }
 
@@ -203,24 +769,91 @@ public class MainExecutor {
       spec.setWorkingDir(outputDir);
       spec.setClasspath(project.files(classPath));
       spec.setMain(Constants.CHICORY_MAIN_CLASS);
-      spec.setComparabilityFile(outputDir, classNamePrefix + ".decls-DynComp");
-      spec.setTargetClass(targetClass);
+      if (comparability) {
+        spec.setComparabilityFile(outputDir, classNamePrefix + Constants.DECLS_DYN_COMP_EXT);
+      }
+      if (daikonOnline) {
+        spec.setDaikonOnline(outputDir, classNamePrefix + Constants.ONLINE_INV_EXT);
+      }
+      spec.setToolOptions(toolOptions);
+      spec.setTracedHeapSize(forkOptions);
       spec.setSelectedClasses(allClassnames);
-      spec.setForkOptions();
+      spec.setOmitPatterns(omitPatterns);
+      // Chicory passes whatever follows the target class on to it
+      spec.setTargetClass(targetClass);
+      spec.setForkOptions(forkOptions);
     }
   }
 
-  static class DaikonExecSpecAction implements Action<DaikonExecSpec> {
+  static class DirectChicoryExecSpecAction implements Action<ChicoryExecSpec> {
 
     private final Project project;
-    private final String classNamePrefix;
     private final List<File> classPath;
+    private final List<String> allClassnames;
+    private final String targetClass;
+    private final String classNamePrefix;
+    private final File premainJar;
+    private final List<String> omitPatterns;
+    private final List<String> toolOptions;
+    private final boolean comparability;
+    private final StageForkOptions forkOptions;
     private final Path outputDir;
 
-    DaikonExecSpecAction(Project project, String classNamePrefix, List<File> classPath, Path outputDir){
+    public DirectChicoryExecSpecAction(Project project, List<File> classPath, List<String> allClassnames, String targetClass, String classNamePrefix, File premainJar, List<String> omitPatterns, List<String> toolOptions, boolean comparability, StageForkOptions forkOptions, Path outputDir){
       this.project = project;
+      this.classPath = classPath;
+      this.allClassnames = allClassnames;
+      this.targetClass = targetClass;
       this.classNamePrefix = classNamePrefix;
+      this.premainJar = premainJar;
+      this.omitPatterns = omitPatterns;
+      this.toolOptions = toolOptions;
+      this.comparability = comparability;
+      this.forkOptions = forkOptions;
+      this.outputDir = outputDir;
+    }
+
+    @Override public void execute(ChicoryExecSpec spec) {
+      spec.setWorkingDir(outputDir);
+      spec.setClasspath(project.files(classPath));
+      spec.setMain(targetClass);
+      spec.setForkOptions(forkOptions);
+      if (forkOptions != null && forkOptions.getTracedHeapSize().isPresent()) {
+        spec.setMaxHeapSize(forkOptions.getTracedHeapSize().get());
+      }
+
+      // File names are relative to the working directory, the same as with Chicory's launcher
+      final List<String> premainArgs = new ArrayList<>();
+      if (comparability) {
+        premainArgs.add("--comparability-file=" + classNamePrefix + Constants.DECLS_DYN_COMP_EXT);
+      }
+      premainArgs.add("--dtrace-file=" + classNamePrefix + Constants.DTRACE_EXT);
+      allClassnames.forEach(each -> premainArgs.add("--ppt-select-pattern=" + each));
+      omitPatterns.forEach(each -> premainArgs.add("--ppt-omit-pattern=" + each));
+      premainArgs.addAll(toolOptions);
+      spec.setJavaAgent(premainJar, premainArgs);
+    }
+  }
+
+  static class DaikonExecSpecAction implements Action<DaikonExecSpec> {
+
+    private final Project project;
+    private final List<File> classPath;
+    private final List<File> dtraceFiles;
+    private final List<String> selectedClasses;
+    private final String invariantsFileName;
+    private final List<String> toolOptions;
+    private final StageForkOptions forkOptions;
+    private final Path outputDir;
+
+    DaikonExecSpecAction(Project project, List<File> classPath, List<File> dtraceFiles, List<String> selectedClasses, String invariantsFileName, List<String> toolOptions, StageForkOptions forkOptions, Path outputDir){
+      this.project = project;
       this.classPath = classPath;
+      this.dtraceFiles = dtraceFiles;
+      this.selectedClasses = selectedClasses;
+      this.invariantsFileName = invariantsFileName;
+      this.toolOptions = toolOptions;
+      this.forkOptions = forkOptions;
       this.outputDir = outputDir;
     }
 
@@ -228,9 +861,42 @@ public class MainExecutor {
       spec.setWorkingDir(outputDir);
       spec.setClasspath(project.files(classPath));
       spec.setMain(Constants.DAIKON_MAIN_CLASS);
-      spec.setDtraceFile(outputDir, classNamePrefix + ".dtrace.gz");
-      spec.setStandardOutput(outputDir, classNamePrefix + ".inv.gz");
-      spec.setForkOptions();
+      if (!selectedClasses.isEmpty()) {
+        // One pattern for them all; Daikon takes a single --ppt-select-pattern
+        spec.setSelectedClasses(SelectPatterns.programPointsOf(selectedClasses));
+      }
+      spec.setToolOptions(toolOptions);
+      spec.setDtraceFiles(outputDir, dtraceFiles);
+      spec.setStandardOutput(outputDir, invariantsFileName);
+      spec.setForkOptions(forkOptions);
+    }
+  }
+
+  static class MergeInvariantsExecSpecAction implements Action<MergeInvariantsExecSpec> {
+
+    private final Project project;
+    private final List<File> classPath;
+    private final List<File> invariantsFiles;
+    private final String invariantsFileName;
+    private final StageForkOptions forkOptions;
+    private final Path outputDir;
+
+    MergeInvariantsExecSpecAction(Project project, List<File> classPath, List<File> invariantsFiles, String invariantsFileName, StageForkOptions forkOptions, Path outputDir){
+      this.project = project;
+      this.classPath = classPath;
+      this.invariantsFiles = invariantsFiles;
+      this.invariantsFileName = invariantsFileName;
+      this.forkOptions = forkOptions;
+      this.outputDir = outputDir;
+    }
+
+    @Override public void execute(MergeInvariantsExecSpec spec) {
+      spec.setWorkingDir(outputDir);
+      spec.setClasspath(project.files(classPath));
+      spec.setMain(Constants.MERGE_INVARIANTS_MAIN_CLASS);
+      spec.setOutputFile(outputDir, invariantsFileName);
+      spec.setInvariantsFiles(outputDir, invariantsFiles);
+      spec.setForkOptions(forkOptions);
     }
   }
 
@@ -238,13 +904,17 @@ public class MainExecutor {
 
     private final Project project;
     private final List<File> classPath;
+    private final String invariantsFileName;
     private final String classNamePrefix;
+    private final StageForkOptions forkOptions;
     private final Path outputDir;
 
-    PrintInvariantsExecSpecAction(Project project, List<File> classPath, String classNamePrefix, Path outputDir){
+    PrintInvariantsExecSpecAction(Project project, List<File> classPath, String invariantsFileName, String classNamePrefix, StageForkOptions forkOptions, Path outputDir){
       this.project = project;
       this.classPath = classPath;
+      this.invariantsFileName = invariantsFileName;
       this.classNamePrefix = classNamePrefix;
+      this.forkOptions = forkOptions;
       this.outputDir = outputDir;
     }
 
@@ -252,10 +922,26 @@ public class MainExecutor {
       spec.setWorkingDir(outputDir);
       spec.setClasspath(project.files(classPath));
       spec.setMain(Constants.PRINT_INVARIANTS_MAIN_CLASS);
-      spec.setOutputFile(outputDir, classNamePrefix + ".inv.txt");
+      spec.setOutputFile(outputDir, classNamePrefix + Constants.INV_TXT_EXT);
 //      spec.setWrapXml();
-      spec.setInvariantsFile(outputDir, classNamePrefix + ".inv.gz");
+      spec.setInvariantsFile(outputDir, invariantsFileName);
+      spec.setForkOptions(forkOptions);
 //      spec.setOutputNumberSamples();
     }
   }
+
+  private static final class Launch {
+    final String main;
+    final List<String> args;
+    // Added to the tool's own JVM arguments
+    final List<String> jvmArgs;
+    final FileCollection classpath;
+
+    Launch(String main, List<String> args, List<String> jvmArgs, FileCollection classpath){
+      this.main = main;
+      this.args = args;
+      this.jvmArgs = jvmArgs;
+      this.classpath = classpath;
+    }
+  }
 }
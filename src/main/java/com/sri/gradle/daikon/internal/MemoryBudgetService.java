@@ -0,0 +1,147 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.base.Preconditions;
+import java.util.Locale;
+import org.gradle.api.GradleException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+import org.gradle.api.provider.Property;
+import org.gradle.api.services.BuildService;
+import org.gradle.api.services.BuildServiceParameters;
+
+/**
+ * Admits forked Daikon, DynComp, and Chicory JVMs only while the sum of their max heaps fits in a
+ * memory budget. Forks that don't fit wait until enough memory is released. The budget belongs to
+ * one build; other builds and daemons on the machine have budgets of their own.
+ *
+ * <p>A fork that declares no max heap is charged the JVM's default max heap (a quarter of the
+ * physical or container memory). DynComp and Chicory launchers are charged their own heap plus
+ * that of the JVM they start the traced program in. A fork larger than the whole budget is
+ * admitted once nothing else is running, so it can't wait forever.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public abstract class MemoryBudgetService implements BuildService<MemoryBudgetService.Params> {
+  private static final Logger LOGGER = Logging.getLogger(MemoryBudgetService.class);
+
+  private long reservedBytes = 0;
+
+  public interface Params extends BuildServiceParameters {
+    /** @return the budget, in JVM heap size syntax; e.g., {@code 24g} */
+    Property<String> getBudget();
+  }
+
+  /** Memory reserved for one fork; released on close. */
+  public interface Lease extends AutoCloseable {
+    Lease NONE = () -> {};
+
+    @Override
+    void close();
+  }
+
+  /**
+   * Blocks until a JVM with the given max heap fits in the budget.
+   *
+   * @param description what is being forked, for logging
+   * @param maxHeapSize the fork's max heap, in JVM heap size syntax; null if undeclared
+   * @return the reservation, to be closed once the JVM exits
+   */
+  public Lease acquire(String description, String maxHeapSize) {
+    return acquire(description, heapBytes(maxHeapSize));
+  }
+
+  /**
+   * Blocks until a launcher with the given max heap, and the traced JVM it starts, fit in the
+   * budget.
+   *
+   * @param description what is being forked, for logging
+   * @param maxHeapSize the launcher's max heap, in JVM heap size syntax; null if undeclared
+   * @param tracedHeapSize the traced JVM's max heap, in JVM heap size syntax; null if undeclared
+   * @return the reservation, to be closed once both JVMs exit
+   */
+  public Lease acquire(String description, String maxHeapSize, String tracedHeapSize) {
+    return acquire(description, heapBytes(maxHeapSize) + heapBytes(tracedHeapSize));
+  }
+
+  private Lease acquire(String description, long bytes) {
+    final long budget = parseHeapSize(getParameters().getBudget().get());
+
+    synchronized (this) {
+      while (reservedBytes > 0 && reservedBytes + bytes > budget) {
+        LOGGER.info(
+            "Waiting for memory to run {} ({} of {} bytes reserved)",
+            description,
+            reservedBytes,
+            budget);
+        try {
+          wait();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new GradleException("Interrupted while waiting for memory to run " + description, e);
+        }
+      }
+
+      if (bytes > budget) {
+        LOGGER.warn("{} needs {} bytes, more than the whole memory budget", description, bytes);
+      }
+
+      reservedBytes += bytes;
+    }
+
+    return () -> release(bytes);
+  }
+
+  private synchronized void release(long bytes) {
+    reservedBytes -= bytes;
+    notifyAll();
+  }
+
+  /**
+   * Parses a JVM heap size; e.g., {@code 512m} or {@code 4G}.
+   *
+   * @param size the heap size
+   * @return the size in bytes
+   */
+  public static long parseHeapSize(String size) {
+    Preconditions.checkArgument(size != null && !size.trim().isEmpty(), "Empty heap size");
+    final String normalized = size.trim().toLowerCase(Locale.ROOT);
+    final char unit = normalized.charAt(normalized.length() - 1);
+    final String digits =
+        Character.isDigit(unit) ? normalized : normalized.substring(0, normalized.length() - 1);
+
+    final long multiplier;
+    switch (unit) {
+      case 'k':
+        multiplier = 1L << 10;
+        break;
+      case 'm':
+        multiplier = 1L << 20;
+        break;
+      case 'g':
+        multiplier = 1L << 30;
+        break;
+      case 't':
+        multiplier = 1L << 40;
+        break;
+      default:
+        if (!Character.isDigit(unit)) {
+          throw new IllegalArgumentException("Invalid heap size " + size);
+        }
+        multiplier = 1;
+    }
+
+    try {
+      return Long.parseLong(digits) * multiplier;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid heap size " + size, e);
+    }
+  }
+
+  private static long heapBytes(String maxHeapSize) {
+    return maxHeapSize == null ? defaultHeapBytes() : parseHeapSize(maxHeapSize);
+  }
+
+  private static long defaultHeapBytes() {
+    // Same as the JVM's default max heap
+    return HeapEstimator.memoryLimitBytes() / 4;
+  }
+}
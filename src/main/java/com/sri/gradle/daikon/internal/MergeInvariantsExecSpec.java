@@ -0,0 +1,17 @@
+package com.sri.gradle.daikon.internal;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+
+public class MergeInvariantsExecSpec extends MainExecSpec {
+  public void setOutputFile(Path directory, String filename) {
+    args("-o", String.format("%s", relativizeFile(directory, filename)));
+  }
+
+  public void setInvariantsFiles(Path directory, List<File> files) {
+    for (File each : files) {
+      args(String.format("%s", relativizePath(directory, each.toPath())));
+    }
+  }
+}
@@ -0,0 +1,100 @@
+package com.sri.gradle.daikon.internal;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Wraps a tool's main class and, when the JVM exits, appends its peak heap usage (in bytes) to a
+ * file. Forks whose heap is sized by {@link HeapEstimator} run through this class, so the next
+ * estimate can learn from the actual usage.
+ *
+ * <p>The usage is what the heap held right after a collection, i.e. the live data the tool
+ * actually needed, sampled every {@value #SAMPLE_MILLIS} ms. The pools' peak usages would
+ * overstate it: they include garbage, and each pool peaks at a different time.
+ *
+ * <p>Usage: {@code PeakHeapRecorder <peak-heap-file> <main-class> [args...]}.
+ *
+ * <p>Note: this class is the forked JVM's main class, so it must not depend on Gradle or Guava.
+ */
+public class PeakHeapRecorder {
+  private static final long SAMPLE_MILLIS = 100;
+
+  private static volatile long peak = 0;
+
+  private PeakHeapRecorder() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  public static void main(String[] args) throws Throwable {
+    if (args.length < 2) {
+      throw new IllegalArgumentException(
+          "Usage: PeakHeapRecorder <peak-heap-file> <main-class> [args...]");
+    }
+
+    final String peakHeapFile = args[0];
+    final Thread sampler =
+        new Thread(
+            () -> {
+              try {
+                while (true) {
+                  sample();
+                  Thread.sleep(SAMPLE_MILLIS);
+                }
+              } catch (InterruptedException ignored) {
+                // The JVM is exiting
+              }
+            },
+            "peak-heap-sampler");
+    sampler.setDaemon(true);
+    sampler.start();
+    // Tools may leave through System.exit, so record from a shutdown hook
+    Runtime.getRuntime().addShutdownHook(new Thread(() -> record(peakHeapFile)));
+
+    try {
+      Class.forName(args[1])
+          .getMethod("main", String[].class)
+          .invoke(null, (Object) Arrays.copyOfRange(args, 2, args.length));
+    } catch (InvocationTargetException e) {
+      throw e.getCause();
+    }
+  }
+
+  private static synchronized void sample() {
+    long live = 0;
+    for (MemoryPoolMXBean each : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (each.getType() != MemoryType.HEAP) {
+        continue;
+      }
+
+      // Null for pools that are never collected on their own
+      final MemoryUsage collected = each.getCollectionUsage();
+      if (collected != null) {
+        live += collected.getUsed();
+      }
+    }
+    peak = Math.max(peak, live);
+  }
+
+  private static void record(String peakHeapFile) {
+    sample();
+    try {
+      // One line per JVM; e.g., one per Daikon partition
+      Files.write(
+          Paths.get(peakHeapFile),
+          (peak + System.lineSeparator()).getBytes(StandardCharsets.UTF_8),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.APPEND);
+    } catch (IOException ignored) {
+      // Only costs the next estimate some accuracy
+    }
+  }
+}
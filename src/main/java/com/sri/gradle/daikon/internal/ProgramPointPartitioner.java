@@ -0,0 +1,74 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.collect.ImmutableList;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Function;
+
+/**
+ * Splits the program point select patterns into groups, so that Daikon can process each group in a
+ * separate JVM.
+ */
+public class ProgramPointPartitioner {
+  public static final String BY_CLASS = "class";
+  public static final String BY_PACKAGE = "package";
+
+  private ProgramPointPartitioner() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  /**
+   * Partitions a list of select patterns (fully qualified class names) into at most {@code
+   * groupCount} groups of similar size. Patterns sharing a key (a class or a package) always end
+   * up in the same group.
+   *
+   * @param selectPatterns the ppt select patterns
+   * @param groupCount the maximum number of groups
+   * @param partitionBy either {@value #BY_CLASS} or {@value #BY_PACKAGE}
+   * @return a list of non-empty groups of select patterns.
+   */
+  public static List<List<String>> partition(
+      List<String> selectPatterns, int groupCount, String partitionBy) {
+    Objects.requireNonNull(selectPatterns);
+    if (groupCount < 1) {
+      throw new IllegalArgumentException("The number of groups must be positive");
+    }
+
+    final Function<String, String> keyFunction = keyFunction(partitionBy);
+
+    final Map<String, List<String>> units = new TreeMap<>();
+    for (String each : selectPatterns) {
+      units.computeIfAbsent(keyFunction.apply(each), k -> new ArrayList<>()).add(each);
+    }
+
+    final int size = Math.min(groupCount, units.size());
+    final List<List<String>> groups = new ArrayList<>();
+    for (int idx = 0; idx < size; idx++) {
+      groups.add(new ArrayList<>());
+    }
+
+    // Largest units first, each one into the currently smallest group
+    final List<List<String>> sortedUnits = new ArrayList<>(units.values());
+    sortedUnits.sort(Comparator.comparingInt(List<String>::size).reversed());
+    for (List<String> unit : sortedUnits) {
+      groups.stream().min(Comparator.comparingInt(List::size)).ifPresent(g -> g.addAll(unit));
+    }
+
+    return ImmutableList.copyOf(groups);
+  }
+
+  private static Function<String, String> keyFunction(String partitionBy) {
+    if (BY_CLASS.equals(partitionBy)) {
+      return Function.identity();
+    } else if (BY_PACKAGE.equals(partitionBy)) {
+      return pattern -> pattern.contains(".") ? pattern.substring(0, pattern.lastIndexOf('.')) : "";
+    }
+
+    throw new IllegalArgumentException(
+        "Unknown partitioning strategy " + partitionBy + "; use " + BY_CLASS + " or " + BY_PACKAGE);
+  }
+}
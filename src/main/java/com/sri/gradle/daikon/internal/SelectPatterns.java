@@ -0,0 +1,130 @@
+package com.sri.gradle.daikon.internal;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Builds the {@code --ppt-select-pattern} and {@code --ppt-omit-pattern} regexes of DynComp and
+ * Chicory from package and class names. A name covers itself and everything nested in it; e.g.,
+ * {@code com.foo} covers {@code com.foo.Bar}, {@code com.foo.bar.Baz}, and {@code com.foo.Bar$1},
+ * but not {@code com.foobar.Baz}.
+ */
+public class SelectPatterns {
+  private SelectPatterns() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  /**
+   * @param includes package or class names to instrument; when empty, the packages of {@code
+   *     mainClassNames}
+   * @param mainClassNames binary names of the main source set's classes
+   * @return the select patterns; empty if there's nothing to select by
+   */
+  public static List<String> select(
+      Collection<String> includes, Collection<String> mainClassNames) {
+    return patternOf(includes.isEmpty() ? packagesOf(mainClassNames) : includes);
+  }
+
+  /**
+   * @param excludes package or class names not to instrument
+   * @return the omit patterns; empty if there's nothing to omit
+   */
+  public static List<String> omit(Collection<String> excludes) {
+    return patternOf(excludes);
+  }
+
+  /**
+   * @param selectPatterns patterns from {@link #select}
+   * @param selectedClasses class names selected one by one; e.g., those an incremental run traces
+   * @return the select patterns, or else the selected classes
+   */
+  public static List<String> orClasses(List<String> selectPatterns, List<String> selectedClasses) {
+    return selectPatterns.isEmpty() ? selectedClasses : selectPatterns;
+  }
+
+  /**
+   * @param classNames top-level class names; not empty
+   * @return a single regex matching the program points of these classes and of their nested
+   *     classes; e.g., {@code com.foo.Bar.baz():::ENTER} and {@code com.foo.Bar$1:::OBJECT}, but
+   *     not {@code com.foo.BarTest:::OBJECT}. Unlike DynComp and Chicory, Daikon rejects a second
+   *     {@code --ppt-select-pattern}.
+   */
+  public static String programPointsOf(Collection<String> classNames) {
+    Preconditions.checkArgument(!classNames.isEmpty());
+    return classNames.stream()
+        .map(Pattern::quote)
+        .collect(Collectors.joining("|", "^(?:", ")[.:$]"));
+  }
+
+  /**
+   * @param classNames binary class names
+   * @return the classes matching any of the select patterns and none of the omit patterns
+   */
+  public static List<String> filter(
+      Collection<String> classNames, List<String> selectPatterns, List<String> omitPatterns) {
+    final List<Pattern> selects = compile(selectPatterns);
+    final List<Pattern> omits = compile(omitPatterns);
+    return classNames.stream()
+        .filter(name -> selects.stream().anyMatch(p -> p.matcher(name).find()))
+        .filter(name -> omits.stream().noneMatch(p -> p.matcher(name).find()))
+        .collect(Collectors.toList());
+  }
+
+  /**
+   * @param classNames binary class names
+   * @return their packages; a class of the default package stands for itself
+   */
+  static Set<String> packagesOf(Collection<String> classNames) {
+    final Set<String> packages = new TreeSet<>();
+    for (String each : classNames) {
+      final int lastDot = each.lastIndexOf('.');
+      packages.add(lastDot < 0 ? each : each.substring(0, lastDot));
+    }
+    return packages;
+  }
+
+  /**
+   * @param names package or class names
+   * @return the names that aren't covered by another one, sorted
+   */
+  static List<String> collapse(Collection<String> names) {
+    final Set<String> all = new TreeSet<>(names);
+    return all.stream()
+        .filter(name -> all.stream().noneMatch(other -> covers(other, name)))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  /** @return a single regex covering the names, as one alternation; empty if there are none */
+  static List<String> patternOf(Collection<String> names) {
+    final List<String> collapsed = collapse(names);
+    if (collapsed.isEmpty()) {
+      return ImmutableList.of();
+    }
+
+    final String alternatives =
+        collapsed.stream().map(SelectPatterns::quote).collect(Collectors.joining("|"));
+    // The word boundary keeps com.foo from covering com.foobar
+    return ImmutableList.of(
+        collapsed.size() == 1 ? "^" + alternatives + "\\b" : "^(?:" + alternatives + ")\\b");
+  }
+
+  private static boolean covers(String outer, String inner) {
+    return inner.length() > outer.length()
+        && inner.startsWith(outer)
+        && (inner.charAt(outer.length()) == '.' || inner.charAt(outer.length()) == '$');
+  }
+
+  private static String quote(String name) {
+    return name.replace(".", "\\.").replace("$", "\\$");
+  }
+
+  private static List<Pattern> compile(List<String> patterns) {
+    return patterns.stream().map(Pattern::compile).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,93 @@
+package com.sri.gradle.daikon.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.runner.Description;
+import org.junit.runner.Result;
+import org.junit.runner.notification.RunListener;
+
+/**
+ * Registered by the generated test driver when Chicory runs it, to find the tests that dominate
+ * tracing. Records each test's wall time and the dtrace bytes written while it ran, and writes them
+ * to {@value #REPORT_FILE} in the working directory once the run is over, heaviest trace first.
+ *
+ * <p>Trace bytes are sampled from the size of the dtrace files in the working directory. They are
+ * compressed and buffered bytes, so they are only indicative for short tests.
+ *
+ * <p>Note: this class is loaded by the traced JVM, so it must not depend on Gradle or Guava.
+ */
+@RunListener.ThreadSafe
+public class TestProfileListener extends RunListener {
+  public static final String REPORT_FILE = "test-profile.csv";
+
+  private static final String DTRACE = ".dtrace";
+
+  private final File workingDir = new File(System.getProperty("user.dir"));
+  // Test -> {start time in nanoseconds, trace bytes at start}
+  private final Map<Description, long[]> running = new HashMap<>();
+  private final List<Row> rows = new ArrayList<>();
+
+  @Override
+  public synchronized void testStarted(Description description) {
+    running.put(description, new long[] {System.nanoTime(), traceBytes()});
+  }
+
+  @Override
+  public synchronized void testFinished(Description description) {
+    final long[] start = running.remove(description);
+    if (start == null) {
+      return;
+    }
+
+    final String test = description.getClassName() + "#" + description.getMethodName();
+    rows.add(
+        new Row(
+            test, (System.nanoTime() - start[0]) / 1_000_000, Math.max(0, traceBytes() - start[1])));
+  }
+
+  @Override
+  public synchronized void testRunFinished(Result result) throws IOException {
+    rows.sort((a, b) -> Long.compare(b.traceBytes, a.traceBytes));
+
+    final File report = new File(workingDir, REPORT_FILE);
+    try (PrintWriter out =
+        new PrintWriter(Files.newBufferedWriter(report.toPath(), StandardCharsets.UTF_8))) {
+      out.println("test,millis,trace_bytes");
+      for (Row each : rows) {
+        // Parameterized test names may contain commas
+        final String test = "\"" + each.test.replace("\"", "\"\"") + "\"";
+        out.println(test + "," + each.millis + "," + each.traceBytes);
+      }
+    }
+  }
+
+  private long traceBytes() {
+    final File[] traces = workingDir.listFiles((dir, name) -> name.contains(DTRACE));
+    long bytes = 0;
+    if (traces != null) {
+      for (File each : traces) {
+        bytes += each.length();
+      }
+    }
+    return bytes;
+  }
+
+  private static class Row {
+    final String test;
+    final long millis;
+    final long traceBytes;
+
+    Row(String test, long millis, long traceBytes) {
+      this.test = test;
+      this.millis = millis;
+      this.traceBytes = traceBytes;
+    }
+  }
+}
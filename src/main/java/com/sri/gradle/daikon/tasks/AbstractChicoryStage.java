@@ -0,0 +1,73 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.sri.gradle.daikon.internal.MainExecutor;
+import com.sri.gradle.daikon.internal.SelectPatterns;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+/**
+ * A stage that runs the test driver under Chicory. Subclasses decide where the trace goes, and
+ * declare the files they write.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public abstract class AbstractChicoryStage extends AbstractDaikonStage {
+
+  private final ListProperty<String> selectedClasses;
+  private final ListProperty<String> selectPatterns;
+  private final ListProperty<String> omitPatterns;
+  private final RegularFileProperty comparabilityFile;
+
+  public AbstractChicoryStage() {
+    this.selectedClasses = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.selectPatterns = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.omitPatterns = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.comparabilityFile = getProject().getObjects().fileProperty(); // unchecked warning
+  }
+
+  @Override
+  protected void runStage(MainExecutor executor, List<File> classpath, Path outputDir) {
+    executor.useOmitPatterns(getOmitPatterns().get());
+    executor.useComparability(getComparabilityFile().isPresent());
+    execChicory(
+        executor,
+        classpath,
+        SelectPatterns.orClasses(getSelectPatterns().get(), getSelectedClasses().get()),
+        outputDir);
+  }
+
+  /** Runs Chicory on the test driver, selecting the given patterns. */
+  protected abstract void execChicory(
+      MainExecutor executor, List<File> classpath, List<String> selectPatterns, Path outputDir);
+
+  @Input
+  public ListProperty<String> getSelectedClasses() {
+    return this.selectedClasses;
+  }
+
+  // Supersede the selected classes when present; see SelectPatterns
+  @Input
+  public ListProperty<String> getSelectPatterns() {
+    return this.selectPatterns;
+  }
+
+  @Input
+  public ListProperty<String> getOmitPatterns() {
+    return this.omitPatterns;
+  }
+
+  // Unset when DynComp is skipped; see ExecutionProfile
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public RegularFileProperty getComparabilityFile() {
+    return this.comparabilityFile;
+  }
+}
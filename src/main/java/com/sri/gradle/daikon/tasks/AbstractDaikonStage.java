@@ -0,0 +1,254 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.extensions.StageForkOptions;
+import com.sri.gradle.daikon.internal.DaikonWorkerService;
+import com.sri.gradle.daikon.internal.HeapEstimator;
+import com.sri.gradle.daikon.internal.HeapHistory;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import com.sri.gradle.daikon.internal.MemoryBudgetService;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * A single stage of the Daikon pipeline (DynComp, Chicory, Daikon, or PrintInvariants).
+ *
+ * <p>Each stage declares its own inputs and outputs so that Gradle can skip a stage, or restore
+ * its outputs from the build cache, independently of the other stages.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public abstract class AbstractDaikonStage extends AbstractNamedTask {
+
+  private final ConfigurableFileCollection classpath;
+  private final DirectoryProperty outputDir;
+  private final Property<String> mainClass;
+  private final Property<DaikonWorkerService> workerService;
+  private final Property<Boolean> async;
+  private final Property<MemoryBudgetService> memoryBudget;
+  private final Property<StageForkOptions> forkOptions;
+  private final RegularFileProperty heapHistoryFile;
+  private final DirectoryProperty cdsArchiveDir;
+  private final ListProperty<String> toolOptions;
+
+  public AbstractDaikonStage() {
+    this.classpath = getProject().files();
+    this.outputDir = getProject().getObjects().directoryProperty(); // unchecked warning
+    this.mainClass = getProject().getObjects().property(String.class); // unchecked warning
+    this.workerService = getProject().getObjects().property(DaikonWorkerService.class); // unchecked warning
+    this.async = getProject().getObjects().property(Boolean.class).convention(false); // unchecked warning
+    this.memoryBudget = getProject().getObjects().property(MemoryBudgetService.class); // unchecked warning
+    this.forkOptions = getProject().getObjects().property(StageForkOptions.class); // unchecked warning
+    this.heapHistoryFile = getProject().getObjects().fileProperty(); // unchecked warning
+    this.cdsArchiveDir = getProject().getObjects().directoryProperty(); // unchecked warning
+    this.toolOptions = getProject().getObjects().listProperty(String.class); // unchecked warning
+  }
+
+  @Inject
+  protected abstract WorkerExecutor getWorkerExecutor();
+
+  @TaskAction
+  public void runStage() {
+    final File outputDir = getOutputDir().getAsFile().get();
+
+    if (!Files.exists(outputDir.toPath())) {
+      if (!outputDir.mkdirs()) {
+        throw new GradleException("Unable to create output directory");
+      }
+
+      getLogger().debug("Current output directory: " + outputDir);
+    }
+
+    // Use Gradle's Executor and ExecSpec pattern. This the replacement
+    // for the Command object and its built Java programs; e.g., Daikon, Chicory, DynComp
+    final MainExecutor mainExecutor =
+        new MainExecutor(
+            getProject(),
+            getWorkerService().getOrNull(),
+            submitsWorkItems() ? getWorkerExecutor() : null,
+            getMemoryBudget().getOrNull(),
+            getForkOptions().getOrNull());
+
+    mainExecutor.useToolOptions(getToolOptions().get());
+    if (getCdsArchiveDir().isPresent()) {
+      final File archiveDir = getCdsArchiveDir().getAsFile().get();
+      mainExecutor.useSharedArchive(
+          new File(archiveDir, Constants.CDS_ARCHIVE_FILE),
+          new File(archiveDir, Constants.DAIKON_JAR_FILE));
+    }
+
+    final long inputBytes = getHeapEstimateInputBytes();
+    final boolean autoHeap =
+        inputBytes >= 0
+            && getHeapHistoryFile().isPresent()
+            && getForkOptions().isPresent()
+            && getForkOptions().get().getAutoHeap().get();
+    final Path peakHeapFile = getTemporaryDir().toPath().resolve("peak-heap.txt");
+    if (autoHeap) {
+      estimateHeap(mainExecutor, inputBytes, peakHeapFile);
+    }
+
+    runStage(mainExecutor, new ArrayList<>(getClasspath().getFiles()), outputDir.toPath());
+
+    if (autoHeap) {
+      // The peak heaps are only known once the tools are done
+      mainExecutor.await();
+      recordHeap(inputBytes, peakHeapFile);
+    }
+  }
+
+  private void estimateHeap(MainExecutor mainExecutor, long inputBytes, Path peakHeapFile) {
+    final HeapHistory history = HeapHistory.load(getHeapHistoryFile().getAsFile().get().toPath());
+    final long programPoints =
+        HeapEstimator.countProgramPoints(outputFile(Constants.INV_TXT_EXT).get().getAsFile().toPath());
+    final long maxHeap =
+        HeapEstimator.estimate(
+            inputBytes,
+            programPoints > 0 ? programPoints : history.getProgramPoints(),
+            history,
+            HeapEstimator.memoryLimitBytes());
+
+    try {
+      Files.deleteIfExists(peakHeapFile);
+    } catch (IOException e) {
+      throw new GradleException("Unable to delete " + peakHeapFile, e);
+    }
+
+    getLogger().info("Estimated max heap for " + getName() + ": " + HeapEstimator.toHeapSize(maxHeap));
+    mainExecutor.useEstimatedHeap(HeapEstimator.toHeapSize(maxHeap), peakHeapFile.toFile());
+  }
+
+  private void recordHeap(long inputBytes, Path peakHeapFile) {
+    final long peakHeap = HeapEstimator.readPeakHeap(peakHeapFile);
+    if (peakHeap <= 0) {
+      return;
+    }
+
+    final HeapHistory history =
+        new HeapHistory(
+            inputBytes,
+            HeapEstimator.countProgramPoints(outputFile(Constants.INV_TXT_EXT).get().getAsFile().toPath()),
+            peakHeap);
+    try {
+      history.save(getHeapHistoryFile().getAsFile().get().toPath());
+    } catch (IOException e) {
+      getLogger().warn("Unable to record the heap usage of " + getName(), e);
+    }
+  }
+
+  /**
+   * Size of this stage's input, used to estimate the tool's heap when {@code autoHeap} is set.
+   *
+   * @return the size in bytes, or -1 if this stage doesn't support heap estimates
+   */
+  protected long getHeapEstimateInputBytes() {
+    return -1;
+  }
+
+  /**
+   * @return whether the tools run as Gradle work items, in which case the executor's methods
+   *     return before the tools finish; by default, only when {@link #getAsync()} is set
+   */
+  protected boolean submitsWorkItems() {
+    return getAsync().get();
+  }
+
+  /**
+   * Runs this stage's tool.
+   *
+   * @param executor the executor used to fork the tool's JVM; it may return before the tool
+   *     finishes, so call {@link MainExecutor#await()} before using the tool's outputs
+   * @param classpath the classpath needed to run the tool
+   * @param outputDir the Daikon output directory
+   */
+  protected abstract void runStage(MainExecutor executor, List<File> classpath, Path outputDir);
+
+  @Classpath
+  public ConfigurableFileCollection getClasspath() {
+    return this.classpath;
+  }
+
+  @Internal
+  public DirectoryProperty getOutputDir() {
+    return this.outputDir;
+  }
+
+  @Input
+  public Property<String> getMainClass() {
+    return this.mainClass;
+  }
+
+  // Where the tool runs doesn't change its outputs
+  @Internal
+  public Property<DaikonWorkerService> getWorkerService() {
+    return this.workerService;
+  }
+
+  // When true, the tool runs as a Gradle work item and this task's action returns right away
+  @Internal
+  public Property<Boolean> getAsync() {
+    return this.async;
+  }
+
+  // Only decides when the tool starts
+  @Internal
+  public Property<MemoryBudgetService> getMemoryBudget() {
+    return this.memoryBudget;
+  }
+
+  // Heap sizes and JVM flags don't change what the tool produces
+  @Internal
+  public Property<StageForkOptions> getForkOptions() {
+    return this.forkOptions;
+  }
+
+  // Survives clean builds, so that estimates keep improving
+  @Internal
+  public RegularFileProperty getHeapHistoryFile() {
+    return this.heapHistoryFile;
+  }
+
+  // Extra options of DynComp, Chicory, or Daikon; see ExecutionProfile
+  @Input
+  public ListProperty<String> getToolOptions() {
+    return this.toolOptions;
+  }
+
+  // Only speeds up the tools' startup; see BuildCdsArchive
+  @Internal
+  public DirectoryProperty getCdsArchiveDir() {
+    return this.cdsArchiveDir;
+  }
+
+  @Internal
+  public Provider<String> getClassNamePrefix() {
+    return getMainClass().map(main -> main.substring(main.lastIndexOf('.') + 1));
+  }
+
+  /**
+   * Locates a file named after the test driver in the Daikon output directory.
+   *
+   * @param extension file extension; e.g., {@code .dtrace.gz}
+   * @return a provider for the output directory's file
+   */
+  protected Provider<RegularFile> outputFile(String extension) {
+    return getOutputDir().file(getClassNamePrefix().map(prefix -> prefix + extension));
+  }
+}
@@ -0,0 +1,155 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.google.common.hash.Hashing;
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+/**
+ * Folds the invariants of the latest run into a rolling store of past runs, and merges every
+ * stored run into one invariants file with MergeInvariants. Only the most recent {@code maxRuns}
+ * runs are kept.
+ *
+ * <p>Runs are only told apart by the content of their invariants file, so a run identical to a
+ * stored one is not stored again. Every other run is kept and merged, even when it traced the same
+ * tests as an earlier one; MergeInvariants then counts the samples of those tests once per run.
+ * The merged file thus weighs tests by how many stored runs traced them, which favors long-lived
+ * tests, but no history is lost.
+ *
+ * <p>Not cacheable: the merged file depends on the store, which lives outside the task's outputs.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public abstract class AccumulateInvariants extends AbstractDaikonStage {
+
+  private final RegularFileProperty invariantsFile;
+  private final DirectoryProperty storeDir;
+  private final Property<Integer> maxRuns;
+
+  public AccumulateInvariants() {
+    this.invariantsFile = getProject().getObjects().fileProperty(); // unchecked warning
+    this.storeDir = getProject().getObjects().directoryProperty(); // unchecked warning
+    this.maxRuns = getProject().getObjects().property(Integer.class); // unchecked warning
+  }
+
+  @Override
+  protected void runStage(MainExecutor executor, List<File> classpath, Path outputDir) {
+    final File storeDir = getStoreDir().getAsFile().get();
+    final List<File> runs;
+    try {
+      addRun(storeDir);
+      runs = pruneRuns(storeDir);
+    } catch (IOException e) {
+      throw new GradleException("Unable to update the invariant store " + storeDir, e);
+    }
+
+    getLogger().info("Merging the invariants of {} runs", runs.size());
+    final File accumulated = getAccumulatedFile().get().getAsFile();
+    if (runs.size() == 1) {
+      try {
+        Files.copy(runs.get(0).toPath(), accumulated.toPath(), StandardCopyOption.REPLACE_EXISTING);
+      } catch (IOException e) {
+        throw new GradleException("Unable to create " + accumulated, e);
+      }
+      return;
+    }
+
+    executor.execMergeInvariants(classpath, runs, accumulated.getName(), outputDir);
+  }
+
+  private void addRun(File storeDir) throws IOException {
+    final File latest = getInvariantsFile().getAsFile().get();
+    final String hash =
+        Hashing.sha256().hashBytes(Files.readAllBytes(latest.toPath())).toString().substring(0, 16);
+
+    // The same run is never stored twice; e.g., when inferInvariants was up to date
+    final File[] stored = storedRuns(storeDir);
+    if (Arrays.stream(stored).anyMatch(run -> run.getName().contains(hash))) {
+      return;
+    }
+
+    final String timestamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+    Files.createDirectories(storeDir.toPath());
+    Files.copy(
+        latest.toPath(), storeDir.toPath().resolve(timestamp + "-" + hash + Constants.INV_EXT));
+  }
+
+  private List<File> pruneRuns(File storeDir) throws IOException {
+    // File names start with a timestamp, so the oldest runs come first
+    final List<File> runs =
+        Arrays.stream(storedRuns(storeDir)).sorted().collect(Collectors.toList());
+    final int surplus = runs.size() - Math.max(1, getMaxRuns().get());
+    for (File each : new ArrayList<>(runs.subList(0, Math.max(0, surplus)))) {
+      Files.delete(each.toPath());
+      runs.remove(each);
+    }
+    return runs;
+  }
+
+  private static File[] storedRuns(File storeDir) {
+    final File[] runs = storeDir.listFiles((dir, name) -> name.endsWith(Constants.INV_EXT));
+    return runs == null ? new File[0] : runs;
+  }
+
+  @Override
+  protected long getHeapEstimateInputBytes() {
+    return Arrays.stream(storedRuns(getStoreDir().getAsFile().get()))
+            .mapToLong(File::length)
+            .sum()
+        + getInvariantsFile().getAsFile().get().length();
+  }
+
+  // The latest run's invariants
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public RegularFileProperty getInvariantsFile() {
+    return this.invariantsFile;
+  }
+
+  // Survives clean builds, so that invariants keep accumulating
+  @Internal
+  public DirectoryProperty getStoreDir() {
+    return this.storeDir;
+  }
+
+  @Input
+  public Property<Integer> getMaxRuns() {
+    return this.maxRuns;
+  }
+
+  @OutputFile
+  public Provider<RegularFile> getAccumulatedFile() {
+    return outputFile(Constants.ACCUMULATED_INV_EXT);
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.ACCUMULATE_INVARIANTS_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.ACCUMULATE_INVARIANTS_TASK_DESCRIPTION;
+  }
+}
@@ -0,0 +1,197 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.Constants;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import org.gradle.api.GradleException;
+import org.gradle.api.JavaVersion;
+import org.gradle.api.Task;
+import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.process.ExecResult;
+
+/**
+ * Builds an application class data sharing (AppCDS) archive of the classes that Daikon,
+ * PrintInvariants, MergeInvariants, and the DynComp and Chicory launchers load on startup. Each
+ * tool is run once with {@code --help} to list them. The archive is kept in a cache shared by
+ * every build on the machine, one per JDK and daikon.jar checksum, along with the copy of
+ * daikon.jar it was built from; the JVM only maps an archive on top of that exact jar.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class BuildCdsArchive extends AbstractNamedTask {
+  private static final List<String> ARCHIVED_MAIN_CLASSES =
+      ImmutableList.of(
+          Constants.DAIKON_MAIN_CLASS,
+          Constants.PRINT_INVARIANTS_MAIN_CLASS,
+          Constants.MERGE_INVARIANTS_MAIN_CLASS,
+          Constants.DYN_COMP_MAIN_CLASS,
+          Constants.CHICORY_MAIN_CLASS);
+
+  private final RegularFileProperty daikonJar;
+  private final DirectoryProperty cacheDir;
+
+  public BuildCdsArchive() {
+    this.daikonJar = getProject().getObjects().fileProperty(); // unchecked warning
+    this.cacheDir = getProject().getObjects().directoryProperty(); // unchecked warning
+
+    // Don't convert to lambda. See comment in DaikonPlugin#configureSourceGeneratingTask.
+    onlyIf(
+        new Spec<Task>() {
+          @Override
+          public boolean isSatisfiedBy(Task ignored) {
+            // Archives of application classes need JDK 11; JDK 10 hid them behind a flag
+            return JavaVersion.current().isJava11Compatible()
+                && getDaikonJar().getAsFile().get().isFile()
+                && !getArchiveFile().get().exists();
+          }
+        });
+  }
+
+  @TaskAction
+  public void buildArchive() {
+    final Path archiveDir = getArchiveDir().get().getAsFile().toPath();
+    final Path archivedJar = getArchivedJar().get().toPath();
+    final Path classListDir = getTemporaryDir().toPath();
+
+    getLogger().quiet("Archiving Daikon's startup classes; this is done once per JDK and jar");
+    try {
+      Files.createDirectories(archiveDir);
+      if (!Files.exists(archivedJar)) {
+        final Path sourceJar = getDaikonJar().getAsFile().get().toPath();
+        final Path tempJar = Files.createTempFile(archiveDir, Constants.DAIKON_JAR_FILE, ".tmp");
+        Files.copy(sourceJar, tempJar, StandardCopyOption.REPLACE_EXISTING);
+        try {
+          Files.move(tempJar, archivedJar);
+        } catch (FileAlreadyExistsException e) {
+          // Copied by another build on this machine, whose archive must keep matching it
+          Files.delete(tempJar);
+        }
+      }
+
+      final Set<String> classNames = new LinkedHashSet<>();
+      for (String each : ARCHIVED_MAIN_CLASSES) {
+        final Path classList = classListDir.resolve(each + ".classlist");
+        Files.deleteIfExists(classList);
+        getProject().javaexec(spec -> {
+          spec.setStandardOutput(Constants.QUIET_OUTPUT);
+          spec.setErrorOutput(Constants.QUIET_OUTPUT);
+          spec.setClasspath(getProject().files(archivedJar.toFile()));
+          spec.setMain(each);
+          spec.args("--help");
+          spec.jvmArgs("-Xshare:off", "-XX:DumpLoadedClassList=" + classList);
+          // Some tools exit with an error after printing their usage
+          spec.setIgnoreExitValue(true);
+        });
+        classNames.addAll(readClassList(classList));
+      }
+
+      final Path classList = classListDir.resolve("daikon.classlist");
+      Files.write(classList, classNames, Constants.ENCODING);
+
+      final Path tempArchive =
+          Files.createTempFile(archiveDir, Constants.CDS_ARCHIVE_FILE, ".tmp");
+      final ExecResult result = getProject().javaexec(spec -> {
+        spec.setStandardOutput(Constants.QUIET_OUTPUT);
+        spec.setClasspath(getProject().files(archivedJar.toFile()));
+        // The JVM exits once the archive is dumped, before running the main class
+        spec.setMain(Constants.DAIKON_MAIN_CLASS);
+        spec.jvmArgs(
+            "-Xshare:dump",
+            "-XX:SharedClassListFile=" + classList,
+            "-XX:SharedArchiveFile=" + tempArchive);
+      });
+      result.assertNormalExitValue();
+      Files.move(
+          tempArchive,
+          getArchiveFile().get().toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } catch (IOException e) {
+      throw new GradleException("Unable to create the class data sharing archive", e);
+    }
+  }
+
+  /**
+   * @param classList a class list written by {@code -XX:DumpLoadedClassList}
+   * @return the names of the listed classes. Newer JDKs add ids, which differ from one list to
+   *     another, and lines for lambda proxies, which refer to those ids; both are dropped.
+   */
+  static List<String> readClassList(Path classList) throws IOException {
+    if (!Files.exists(classList)) {
+      return ImmutableList.of();
+    }
+
+    final ImmutableList.Builder<String> classNames = ImmutableList.builder();
+    for (String each : Files.readAllLines(classList, Constants.ENCODING)) {
+      final String line = each.trim();
+      if (line.isEmpty() || line.startsWith("#") || line.startsWith("@")) {
+        continue;
+      }
+      classNames.add(line.split("\\s+", 2)[0]);
+    }
+    return classNames.build();
+  }
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public RegularFileProperty getDaikonJar() {
+    return this.daikonJar;
+  }
+
+  // Shared by every build on the machine
+  @Internal
+  public DirectoryProperty getCacheDir() {
+    return this.cacheDir;
+  }
+
+  // Outside the project, so it's not tracked by Gradle; see the onlyIf check instead
+  @Internal
+  public Provider<Directory> getArchiveDir() {
+    return getCacheDir()
+        .dir(
+            getDaikonJar()
+                .map(
+                    jar ->
+                        BuildDynCompRuntime.jdkKey()
+                            + File.separator
+                            + BuildDynCompRuntime.checksum(jar.getAsFile())));
+  }
+
+  // The archive; the tool JVMs map it with -XX:SharedArchiveFile
+  @Internal
+  public Provider<File> getArchiveFile() {
+    return getArchiveDir().map(dir -> dir.file(Constants.CDS_ARCHIVE_FILE).getAsFile());
+  }
+
+  // The daikon.jar the archive was built from, which the tool JVMs then use instead
+  @Internal
+  public Provider<File> getArchivedJar() {
+    return getArchiveDir().map(dir -> dir.file(Constants.DAIKON_JAR_FILE).getAsFile());
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.BUILD_CDS_ARCHIVE_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.BUILD_CDS_ARCHIVE_TASK_DESCRIPTION;
+  }
+}
@@ -0,0 +1,170 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.google.common.hash.Hashing;
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.extensions.StageForkOptions;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import com.sri.gradle.daikon.utils.MoreFiles;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import org.gradle.api.GradleException;
+import org.gradle.api.Task;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.specs.Spec;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.TaskAction;
+
+/**
+ * Builds DynComp's instrumented JDK runtime (dcomp_rt.jar) for the JDK running Gradle, which is
+ * also the JDK DynComp runs on. The jar is kept in a cache shared by every build on the machine,
+ * one per JDK vendor and version and daikon.jar checksum, so it's only built again after a JDK or
+ * Daikon update.
+ */
+@SuppressWarnings("UnstableApiUsage")
+public class BuildDynCompRuntime extends AbstractNamedTask {
+
+  // daikon.jar path, length, and modification time -> checksum
+  private static String checksumOf;
+  private static String checksum;
+
+  private final ConfigurableFileCollection classpath;
+  private final RegularFileProperty daikonJar;
+  private final DirectoryProperty cacheDir;
+  private final Property<StageForkOptions> forkOptions;
+
+  public BuildDynCompRuntime() {
+    this.classpath = getProject().files();
+    this.daikonJar = getProject().getObjects().fileProperty(); // unchecked warning
+    this.cacheDir = getProject().getObjects().directoryProperty(); // unchecked warning
+    this.forkOptions = getProject().getObjects().property(StageForkOptions.class); // unchecked warning
+
+    // Don't convert to lambda. See comment in DaikonPlugin#configureSourceGeneratingTask.
+    onlyIf(
+        new Spec<Task>() {
+          @Override
+          public boolean isSatisfiedBy(Task ignored) {
+            return !getRuntimeJar().get().getAsFile().exists();
+          }
+        });
+  }
+
+  @TaskAction
+  public void buildRuntime() {
+    final Path runtimeJar = getRuntimeJar().get().getAsFile().toPath();
+    final Path instrumentedDir = getTemporaryDir().toPath().resolve("jdk");
+    getProject().delete(instrumentedDir.toFile());
+
+    getLogger().quiet("Instrumenting the JDK for DynComp; this is done once per JDK version");
+    final MainExecutor mainExecutor =
+        new MainExecutor(getProject(), null, null, null, getForkOptions().getOrNull());
+    mainExecutor.execBuildJdk(new ArrayList<>(getClasspath().getFiles()), instrumentedDir);
+
+    try {
+      Files.createDirectories(runtimeJar.getParent());
+      // Another build on this machine may be building the same jar; the last move wins
+      final Path tempJar =
+          Files.createTempFile(runtimeJar.getParent(), Constants.DYN_COMP_RT_JAR_FILE, ".tmp");
+      try {
+        MoreFiles.jar(instrumentedDir, tempJar);
+        Files.move(
+            tempJar,
+            runtimeJar,
+            StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        // Left behind only when jarring or moving failed; the cache is shared
+        Files.deleteIfExists(tempJar);
+      }
+    } catch (IOException e) {
+      throw new GradleException("Unable to create " + runtimeJar, e);
+    }
+
+    getProject().delete(instrumentedDir.toFile());
+  }
+
+  @Classpath
+  public ConfigurableFileCollection getClasspath() {
+    return this.classpath;
+  }
+
+  // Already part of the classpath; only keys the cache
+  @Internal
+  public RegularFileProperty getDaikonJar() {
+    return this.daikonJar;
+  }
+
+  // Shared by every build on the machine
+  @Internal
+  public DirectoryProperty getCacheDir() {
+    return this.cacheDir;
+  }
+
+  // Heap sizes and JVM flags don't change what BuildJDK produces
+  @Internal
+  public Property<StageForkOptions> getForkOptions() {
+    return this.forkOptions;
+  }
+
+  // Outside the project, so it's not tracked by Gradle; see the onlyIf check instead
+  @Internal
+  public Provider<RegularFile> getRuntimeJar() {
+    return getCacheDir()
+        .file(
+            getDaikonJar()
+                .map(
+                    jar ->
+                        jdkKey()
+                            + File.separator
+                            + checksum(jar.getAsFile())
+                            + File.separator
+                            + Constants.DYN_COMP_RT_JAR_FILE));
+  }
+
+  /** @return the running JDK's vendor and full version, including its build; as a file name */
+  static String jdkKey() {
+    final String key =
+        System.getProperty("java.vendor", "unknown")
+            + "-"
+            + System.getProperty("java.runtime.version", System.getProperty("java.version"));
+    return key.replaceAll("[^A-Za-z0-9._+-]", "_");
+  }
+
+  /** @return the first 16 hex digits of the jar's SHA-256; as a file name */
+  static synchronized String checksum(File jar) {
+    // Asked for by every stage; daikon.jar is large
+    final String key = jar.getAbsolutePath() + ":" + jar.length() + ":" + jar.lastModified();
+    if (!key.equals(checksumOf)) {
+      try {
+        checksum =
+            com.google.common.io.Files.asByteSource(jar)
+                .hash(Hashing.sha256())
+                .toString()
+                .substring(0, 16);
+      } catch (IOException e) {
+        throw new GradleException("Unable to read " + jar, e);
+      }
+      checksumOf = key;
+    }
+    return checksum;
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.BUILD_DYN_COMP_RT_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.BUILD_DYN_COMP_RT_TASK_DESCRIPTION;
+  }
+}
@@ -1,43 +1,133 @@
 package com.sri.gradle.daikon.tasks;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.sri.gradle.daikon.Constants;
-import com.sri.gradle.daikon.internal.MainExecutor;
 import java.io.File;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileCollection;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
 import org.gradle.api.tasks.TaskAction;
-import org.gradle.api.tasks.compile.ForkOptions;
 
+/**
+ * Checks that the jars in the {@code requires} directory hold the Daikon tools, by reading their
+ * central directories instead of running them. The jars are the task's inputs, so the check only
+ * runs again once one of their checksums changes.
+ */
+@SuppressWarnings("UnstableApiUsage")
 public class CheckForDaikon extends AbstractNamedTask {
+  private static final List<String> DAIKON_CLASSES =
+      ImmutableList.of("daikon/Daikon.class", "daikon/Chicory.class", "daikon/DynComp.class");
+  // Optional premain jars; checked only when present
+  private static final Map<String, String> PREMAIN_CLASSES =
+      ImmutableMap.of(
+          Constants.CHICORY_JAR_FILE, "daikon/chicory/ChicoryPremain.class",
+          Constants.DYN_COMP_PRE_MAIN_JAR_FILE, "daikon/dcomp/Premain.class");
+
+  private static final Attributes.Name PREMAIN_CLASS = new Attributes.Name("Premain-Class");
+
+  private final DirectoryProperty requires;
+
+  public CheckForDaikon() {
+    this.requires = getProject().getObjects().directoryProperty(); // unchecked warning
+  }
 
   @TaskAction
   public void daikonCheck() {
-    try {
-      final File daikonJar = getJarfile(Constants.DAIKON_JAR_FILE);
-      final ForkOptions options = new ForkOptions();
+    if (!getRequires().isPresent()) {
+      throw new GradleException(Constants.UNEXPECTED_ERROR);
+    }
+
+    final File daikonJar = getRequires().file(Constants.DAIKON_JAR_FILE).get().getAsFile();
+    if (!daikonJar.isFile()) {
+      throw new GradleException(Constants.UNEXPECTED_ERROR);
+    }
+
+    final List<String> checked = new ArrayList<>();
+    for (String each : DAIKON_CLASSES) {
+      checkEntry(daikonJar, each, false);
+    }
+    checked.add(daikonJar.getName());
 
+    for (Map.Entry<String, String> each : PREMAIN_CLASSES.entrySet()) {
+      final File premainJar = getRequires().file(each.getKey()).get().getAsFile();
+      if (premainJar.isFile()) {
+        checkEntry(premainJar, each.getValue(), true);
+        checked.add(premainJar.getName());
+      }
+    }
+
+    final File verdict = getVerdictFile().get().getAsFile();
+    try {
+      Files.createDirectories(verdict.getParentFile().toPath());
+      Files.write(verdict.toPath(), checked, Constants.ENCODING);
+    } catch (IOException e) {
+      throw new GradleException("Unable to write " + verdict, e);
+    }
 
-      final MainExecutor mainExecutor = new MainExecutor(getProject());
-      mainExecutor.execDaikon(spec -> {
-        spec.setClasspath(getProject().files(daikonJar));
-        spec.setWorkingDir(getProject().getProjectDir());
+    getProject().getLogger().quiet(Constants.DAIKON_IN_CLASSPATH);
+  }
 
-        spec.args("--help");
+  private static void checkEntry(File jar, String entry, boolean agent) {
+    // Opening a jar reads its central directory only
+    try (JarFile jarFile = new JarFile(jar, false)) {
+      if (jarFile.getEntry(entry) == null) {
+        throw new GradleException(
+            jar.getName() + " has no " + entry + "." + Constants.NEW_LINE + Constants.UNEXPECTED_ERROR);
+      }
 
-        spec.forkOptions(fork -> {
-          fork.setWorkingDir(spec.getWorkingDir());
-          fork.setJvmArgs(options.getJvmArgs());
-          fork.setMinHeapSize(options.getMemoryInitialSize());
-          fork.setMaxHeapSize(options.getMemoryMaximumSize());
-          fork.setDefaultCharacterEncoding(StandardCharsets.UTF_8.name());
-        });
-      });
+      final Manifest manifest = agent ? jarFile.getManifest() : null;
+      if (agent
+          && (manifest == null || manifest.getMainAttributes().getValue(PREMAIN_CLASS) == null)) {
+        throw new GradleException(jar.getName() + " is not a Java agent; it has no Premain-Class");
+      }
+    } catch (IOException e) {
+      throw new GradleException("Unable to read " + jar, e);
+    }
+  }
 
-      getProject().getLogger().quiet(Constants.DAIKON_IN_CLASSPATH);
+  // The jars are checked by name, and from the directory below
+  @Internal
+  public DirectoryProperty getRequires() {
+    return this.requires;
+  }
 
-    } catch (Exception e) {
-      throw new GradleException(Constants.UNEXPECTED_ERROR);
+  @InputFiles
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  public FileCollection getJars() {
+    if (!getRequires().isPresent()) {
+      return getProject().files();
     }
+
+    return getProject()
+        .files(
+            getRequires().file(Constants.DAIKON_JAR_FILE),
+            getRequires().file(Constants.CHICORY_JAR_FILE),
+            getRequires().file(Constants.DYN_COMP_PRE_MAIN_JAR_FILE));
+  }
+
+  // Lists the checked jars; its only purpose is letting Gradle skip the check
+  @OutputFile
+  public Provider<RegularFile> getVerdictFile() {
+    return getProject()
+        .getLayout()
+        .getBuildDirectory()
+        .file("tmp" + File.separator + getName() + File.separator + "verdict.txt");
   }
 
   @Override
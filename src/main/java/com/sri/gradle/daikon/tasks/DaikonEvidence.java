@@ -6,7 +6,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.sri.gradle.daikon.Constants;
 import com.sri.gradle.daikon.internal.CsvWriter;
-import com.sri.gradle.daikon.utils.Filefinder;
+import com.sri.gradle.daikon.internal.DirectoryScanService;
 import com.sri.gradle.daikon.utils.ImmutableStream;
 import com.sri.gradle.daikon.utils.JavaProjectHelper;
 import com.sri.gradle.daikon.utils.MoreFiles;
@@ -14,9 +14,11 @@ import org.gradle.api.GradleException;
 import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.Writer;
@@ -24,6 +26,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Predicate;
 
 @SuppressWarnings("UnstableApiUsage")
 public class DaikonEvidence extends AbstractNamedTask {
@@ -39,10 +42,12 @@ public class DaikonEvidence extends AbstractNamedTask {
 
   private final DirectoryProperty outputDir;
   private final Property<String> testDriverPackage;
+  private final Property<DirectoryScanService> directoryScans;
 
   public DaikonEvidence() {
     this.outputDir = getProject().getObjects().directoryProperty(); // unchecked warning
     this.testDriverPackage = getProject().getObjects().property(String.class); // unchecked warning
+    this.directoryScans = getProject().getObjects().property(DirectoryScanService.class); // unchecked warning
   }
 
   @TaskAction
@@ -64,8 +69,9 @@ public class DaikonEvidence extends AbstractNamedTask {
     final Map<String, Object> metrics = new HashMap<>();
     final Map<String, Object> config = new HashMap<>();
 
+    final DirectoryScanService scans = getDirectoryScans().get();
     final File daikonOutputDir = getOutputDir().getAsFile().get();
-    final List<File> allTxtFiles = Filefinder.findTextFiles(daikonOutputDir.toPath());
+    final List<File> allTxtFiles = scans.findTextFiles(daikonOutputDir.toPath());
     Optional<Path> invsFile =
         allTxtFiles.stream()
             .map(File::toPath)
@@ -92,7 +98,7 @@ public class DaikonEvidence extends AbstractNamedTask {
 
     final String matchKey = getTestDriverPackage().get();
 
-    final List<String> daikonOutFiles = ImmutableStream.listCopyOf(Filefinder.findAnyFiles(
+    final List<String> daikonOutFiles = ImmutableStream.listCopyOf(scans.findAnyFiles(
             daikonOutputDir.toPath(), "inv.txt").stream()
             .map(f -> workingDir.relativize(f.toPath()).toString()));
 
@@ -115,7 +121,8 @@ public class DaikonEvidence extends AbstractNamedTask {
 
     final JavaProjectHelper helper = new JavaProjectHelper(getProject());
     final Path driverDir = helper.getDriverDir().toPath();
-    final String mainClass = helper.findDriverClass().orElse(null);
+    final String mainClass =
+        JavaProjectHelper.findDriverClass(scans.findJavaFiles(driverDir)).orElse(null);
     // Writing the test driver field depends on whether Daikon or Randoop has generated
     // the driver. Checking the latter is trickier as you have the option to place these
     // anywhere you want to, via the 'junitOutputDir' field. The former is easier for we
@@ -131,7 +138,7 @@ public class DaikonEvidence extends AbstractNamedTask {
       final Path testClassesDir = helper.getTestMainDir().getAsFile().toPath();
       final Set<File> randoopGeneratedTests =
           MoreFiles.getMatchingJavaFiles(
-              testClassesDir, Constants.EXPECTED_RANDOOP_TEST_NAME_REGEX);
+              scans.findJavaFiles(testClassesDir), Constants.EXPECTED_RANDOOP_TEST_NAME_REGEX);
 
       randoopGeneratedTests.stream()
           .filter(
@@ -184,6 +191,12 @@ public class DaikonEvidence extends AbstractNamedTask {
     return this.testDriverPackage;
   }
 
+  // Only speeds up finding the files
+  @Internal
+  public Property<DirectoryScanService> getDirectoryScans() {
+    return this.directoryScans;
+  }
+
   @Override
   protected String getTaskName() {
     return Constants.DAIKON_EVIDENCE_TASK;
@@ -208,62 +221,75 @@ public class DaikonEvidence extends AbstractNamedTask {
     Map<String, String> processLineByLine() throws IOException {
       Preconditions.checkArgument(Files.exists(inputFile));
 
-      final List<String> lines = new LinkedList<>();
-      try (Scanner scanner = new Scanner(inputFile, Constants.ENCODING.name())) {
-        while (scanner.hasNextLine()) {
-          lines.add(scanner.nextLine());
-        }
-      }
-
-      int idx = 0;
+      // The invariants file can be hundreds of MB, so we read it once, line by line,
+      // and only keep the (interned) program point names plus a few counters.
+      final Predicate<String> isTestClass = Constants.EXPECTED_JUNIT4_NAME_REGEX.asPredicate();
       final Set<String> testsExplored = new HashSet<>();
       final Set<String> classesExplored = new HashSet<>();
-      final List<String> invDetected = new LinkedList<>();
-      while (idx < lines.size()) {
-        if (lines.get(idx).contains(Constants.DAIKON_SPLITTER)) {
-          idx++;
-          String ppName = lines.get(idx);
-          // search for class name
-          if (ppName.contains(":::")) {
-            String target = ppName.substring(0, ppName.lastIndexOf(":::"));
-            if (target.contains("(")) {
-              target = target.substring(0, target.indexOf("("));
-              target = target.substring(0, target.lastIndexOf("."));
-            }
-
-            if (Constants.EXPECTED_JUNIT4_NAME_REGEX.asPredicate().test(target)) {
-              final String unitTest = ppName.substring(0, ppName.lastIndexOf(":::"));
-              testsExplored.add(unitTest);
-            } else if (!"org.junit.Assert".equals(target)) {
-              classesExplored.add(target);
-            }
-          }
-          idx++;
-          // search for invariants associated with ppName
-          while (idx < lines.size() && !lines.get(idx).contains(Constants.DAIKON_SPLITTER)) {
-            if (lines.get(idx).startsWith(matchKey) || lines.get(idx).startsWith("this.")) {
-              final String className = lines.get(idx).substring(0, lines.get(idx).lastIndexOf("."));
-              if (!Constants.EXPECTED_JUNIT4_NAME_REGEX.asPredicate().test(className)) {
-                invDetected.add(lines.get(idx));
-              }
-            }
-
-            idx++;
+      long invDetected = 0;
+
+      try (BufferedReader reader = Files.newBufferedReader(inputFile, Constants.ENCODING)) {
+        // true when the next line is the name of a program point
+        boolean expectPpName = false;
+        // true while reading the invariants associated with a program point
+        boolean inPpBody = false;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+          if (expectPpName) {
+            expectPpName = false;
+            inPpBody = true;
+            recordProgramPoint(line, isTestClass, testsExplored, classesExplored);
+          } else if (line.contains(Constants.DAIKON_SPLITTER)) {
+            expectPpName = true;
+            inPpBody = false;
+          } else if (inPpBody && isInvariant(line, isTestClass)) {
+            invDetected++;
           }
-        } else {
-          idx++;
         }
       }
 
       final Map<String, String> details = new IdentityHashMap<>();
       details.put("TESTS_COUNT", String.valueOf(testsExplored.size()));
       details.put("CLASSES_COUNT", String.valueOf(classesExplored.size()));
-      details.put("INVARIANT_COUNT", String.valueOf(invDetected.size()));
+      details.put("INVARIANT_COUNT", String.valueOf(invDetected));
       details.put("PP_COUNT", String.valueOf(testsExplored.size() + classesExplored.size()));
 
       return ImmutableMap.copyOf(details);
     }
 
+    private static void recordProgramPoint(
+        String ppName,
+        Predicate<String> isTestClass,
+        Set<String> testsExplored,
+        Set<String> classesExplored) {
+      // search for class name
+      if (!ppName.contains(":::")) return;
+
+      final String unitTest = ppName.substring(0, ppName.lastIndexOf(":::"));
+      String target = unitTest;
+      if (target.contains("(")) {
+        target = target.substring(0, target.indexOf("("));
+        target = target.substring(0, target.lastIndexOf("."));
+      }
+
+      if (isTestClass.test(target)) {
+        testsExplored.add(unitTest.intern());
+      } else if (!"org.junit.Assert".equals(target)) {
+        classesExplored.add(target.intern());
+      }
+    }
+
+    private boolean isInvariant(String line, Predicate<String> isTestClass) {
+      if (!line.startsWith(matchKey) && !line.startsWith("this.")) return false;
+
+      final int lastDot = line.lastIndexOf(".");
+      if (lastDot < 0) return false;
+
+      final String className = line.substring(0, lastDot);
+      return !isTestClass.test(className);
+    }
+
     void writeToJson(Map<String, Map<String, Object>> evidence) throws IOException {
 
       final Map<String, Map<String, Map<String, Object>>> jsonDoc = new HashMap<>();
@@ -0,0 +1,269 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.internal.IncrementalState;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import com.sri.gradle.daikon.internal.ProgramPointPartitioner;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Property;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+@CacheableTask
+@SuppressWarnings("UnstableApiUsage")
+public abstract class InferInvariants extends AbstractDaikonStage {
+
+  private final ConfigurableFileCollection dtraceFiles;
+  private final ListProperty<String> selectedClasses;
+  private final Property<Integer> partitions;
+  private final Property<String> partitionBy;
+  private final Property<Boolean> parallelPartitions;
+  private final ListProperty<String> allClasses;
+  private final DirectoryProperty incrementalDir;
+  private final ConfigurableFileCollection projectClassesDirs;
+
+  public InferInvariants() {
+    this.dtraceFiles = getProject().files();
+    this.selectedClasses = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.partitions = getProject().getObjects().property(Integer.class); // unchecked warning
+    this.partitionBy = getProject().getObjects().property(String.class); // unchecked warning
+    this.parallelPartitions = getProject().getObjects().property(Boolean.class); // unchecked warning
+    this.allClasses = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.incrementalDir = getProject().getObjects().directoryProperty(); // unchecked warning
+    this.projectClassesDirs = getProject().files();
+  }
+
+  @Override
+  protected void runStage(MainExecutor executor, List<File> classpath, Path outputDir) {
+    if (getIncrementalDir().isPresent()) {
+      runIncremental(executor, classpath, outputDir);
+      return;
+    }
+
+    final List<File> traces = dtraceFiles();
+    final String prefix = getClassNamePrefix().get();
+    final List<List<String>> groups = partitionProgramPoints();
+    if (groups.size() < 2) {
+      executor.execDaikon(prefix, classpath, traces, outputDir);
+      return;
+    }
+
+    // One Daikon process per group of program points, then merge their results
+    final Path partitionsDir = getTemporaryDir().toPath();
+    final List<File> partialInvariants = new ArrayList<>();
+    final List<Runnable> daikonRuns = new ArrayList<>();
+    for (int idx = 0; idx < groups.size(); idx++) {
+      final List<String> group = groups.get(idx);
+      final File partial = partitionsDir.resolve(prefix + "-part" + idx + Constants.INV_EXT).toFile();
+      partialInvariants.add(partial);
+      daikonRuns.add(
+          () ->
+              executor.execDaikon(
+                  classpath, traces, group, outputDir.relativize(partial.toPath()).toString(),
+                  outputDir));
+    }
+
+    runAll(executor, daikonRuns);
+
+    getLogger().debug("Merging " + partialInvariants.size() + " partial invariant files");
+    executor.execMergeInvariants(classpath, partialInvariants, prefix + Constants.INV_EXT, outputDir);
+  }
+
+  private void runIncremental(MainExecutor executor, List<File> classpath, Path outputDir) {
+    final IncrementalState state =
+        new IncrementalState(
+            getIncrementalDir().getAsFile().get().toPath(),
+            new ArrayList<>(getProjectClassesDirs().getFiles()));
+
+    // Only the changed classes were traced; every other class keeps its invariants
+    final List<String> changedClasses = getSelectedClasses().get();
+    getLogger().info("Inferring invariants of {} changed classes", changedClasses.size());
+    if (!changedClasses.isEmpty()) {
+      final List<File> traces = dtraceFiles();
+      final List<Runnable> daikonRuns = new ArrayList<>();
+      for (String each : changedClasses) {
+        final Path classInvariants = state.invariantsFile(each);
+        // Only this class's program points; e.g., not those of com.foo.BarTest for com.foo.Bar
+        daikonRuns.add(
+            () ->
+                executor.execDaikon(
+                    classpath,
+                    traces,
+                    ImmutableList.of(each),
+                    outputDir.relativize(classInvariants).toString(),
+                    outputDir));
+      }
+
+      try {
+        Files.createDirectories(getIncrementalDir().getAsFile().get().toPath());
+      } catch (IOException e) {
+        throw new GradleException("Unable to create the incremental state directory", e);
+      }
+
+      runAll(executor, daikonRuns);
+    }
+
+    final List<String> allClasses = getAllClasses().get();
+    final List<File> classInvariants = new ArrayList<>();
+    for (String each : allClasses) {
+      // A class without program points leaves no invariants file
+      final File invariants = state.invariantsFile(each).toFile();
+      if (invariants.exists()) {
+        classInvariants.add(invariants);
+      }
+    }
+
+    if (classInvariants.isEmpty()) {
+      throw new GradleException("Daikon found no invariants in any class");
+    }
+
+    executor.execMergeInvariants(
+        classpath, classInvariants, getClassNamePrefix().get() + Constants.INV_EXT, outputDir);
+    executor.await();
+
+    try {
+      state.save(allClasses);
+    } catch (IOException e) {
+      throw new GradleException("Unable to record the incremental Daikon state", e);
+    }
+  }
+
+  private List<File> dtraceFiles() {
+    final List<File> traces = new ArrayList<>(getDtraceFiles().getFiles());
+    if (traces.isEmpty()) {
+      throw new GradleException("Unable to find any dtrace file");
+    }
+
+    Collections.sort(traces);
+    return traces;
+  }
+
+  @Override
+  protected long getHeapEstimateInputBytes() {
+    return getDtraceFiles().getFiles().stream().mapToLong(File::length).sum();
+  }
+
+  private List<List<String>> partitionProgramPoints() {
+    final int groupCount = getPartitions().get();
+    if (groupCount < 2 || getSelectedClasses().get().isEmpty()) {
+      return ImmutableList.of(getSelectedClasses().get());
+    }
+
+    try {
+      return ProgramPointPartitioner.partition(
+          getSelectedClasses().get(), groupCount, getPartitionBy().get());
+    } catch (IllegalArgumentException e) {
+      throw new GradleException(e.getMessage(), e);
+    }
+  }
+
+  private void runAll(MainExecutor executor, List<Runnable> daikonRuns) {
+    if (getParallelPartitions().get()) {
+      // Submitted as work items, which Gradle runs side by side within its max workers
+      daikonRuns.forEach(Runnable::run);
+    } else {
+      // Only one Daikon JVM at a time; this caps the peak heap used by this task
+      for (Runnable each : daikonRuns) {
+        each.run();
+        executor.await();
+      }
+    }
+
+    // Submitted work items must be done before their outputs are merged
+    executor.await();
+  }
+
+  @Override
+  protected boolean submitsWorkItems() {
+    // Concurrent Daikon runs need work items; a single one runs as asyncStages says
+    return super.submitsWorkItems() || (getParallelPartitions().get() && daikonRunCount() > 1);
+  }
+
+  private int daikonRunCount() {
+    // Incremental mode runs Daikon once per changed class
+    return getIncrementalDir().isPresent()
+        ? getSelectedClasses().get().size()
+        : partitionProgramPoints().size();
+  }
+
+  // One file per traced JVM; e.g., one per test task fork
+  @InputFiles
+  @PathSensitive(PathSensitivity.NAME_ONLY)
+  public ConfigurableFileCollection getDtraceFiles() {
+    return this.dtraceFiles;
+  }
+
+  @Input
+  public ListProperty<String> getSelectedClasses() {
+    return this.selectedClasses;
+  }
+
+  @Input
+  public Property<Integer> getPartitions() {
+    return this.partitions;
+  }
+
+  @Input
+  public Property<String> getPartitionBy() {
+    return this.partitionBy;
+  }
+
+  // Running the partitions concurrently or one at a time produces the same invariants
+  @Internal
+  public Property<Boolean> getParallelPartitions() {
+    return this.parallelPartitions;
+  }
+
+  // Every test class; only set in incremental mode, where the selected classes are the changed ones
+  @Input
+  @Optional
+  public ListProperty<String> getAllClasses() {
+    return this.allClasses;
+  }
+
+  // Per-class invariants of earlier runs; set in incremental mode only
+  @Internal
+  public DirectoryProperty getIncrementalDir() {
+    return this.incrementalDir;
+  }
+
+  // Only used to tell which classes changed; the classes themselves are traced by Chicory
+  @Internal
+  public ConfigurableFileCollection getProjectClassesDirs() {
+    return this.projectClassesDirs;
+  }
+
+  @OutputFile
+  public Provider<RegularFile> getInvariantsFile() {
+    return outputFile(Constants.INV_EXT);
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.INFER_INVARIANTS_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.INFER_INVARIANTS_TASK_DESCRIPTION;
+  }
+}
@@ -0,0 +1,63 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+@CacheableTask
+@SuppressWarnings("UnstableApiUsage")
+public abstract class PrintInvariants extends AbstractDaikonStage {
+
+  private final RegularFileProperty invariantsFile;
+
+  public PrintInvariants() {
+    this.invariantsFile = getProject().getObjects().fileProperty(); // unchecked warning
+  }
+
+  @Override
+  protected void runStage(MainExecutor executor, List<File> classpath, Path outputDir) {
+    // Not always the stage's own .inv.gz; e.g., the accumulated invariants of several runs
+    final Path invariantsFile = getInvariantsFile().getAsFile().get().toPath();
+    executor.execPrintDaikonInfo(
+        classpath,
+        outputDir.relativize(invariantsFile).toString(),
+        getClassNamePrefix().get(),
+        outputDir);
+  }
+
+  @Override
+  protected long getHeapEstimateInputBytes() {
+    return getInvariantsFile().getAsFile().get().length();
+  }
+
+  @InputFile
+  @PathSensitive(PathSensitivity.NONE)
+  public RegularFileProperty getInvariantsFile() {
+    return this.invariantsFile;
+  }
+
+  @OutputFile
+  public Provider<RegularFile> getTextFile() {
+    return outputFile(Constants.INV_TXT_EXT);
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.PRINT_INVARIANTS_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.PRINT_INVARIANTS_TASK_DESCRIPTION;
+  }
+}
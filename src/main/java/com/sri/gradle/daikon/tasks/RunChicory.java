@@ -0,0 +1,49 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import com.sri.gradle.daikon.internal.TestProfileListener;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.OutputFile;
+
+@CacheableTask
+@SuppressWarnings("UnstableApiUsage")
+public abstract class RunChicory extends AbstractChicoryStage {
+
+  @Override
+  protected void execChicory(
+      MainExecutor executor, List<File> classpath, List<String> selectPatterns, Path outputDir) {
+    executor.execChicory(
+        classpath,
+        selectPatterns,
+        getMainClass().get(),
+        getClassNamePrefix().get(),
+        outputDir);
+  }
+
+  @OutputFile
+  public Provider<RegularFile> getDtraceFile() {
+    return outputFile(Constants.DTRACE_EXT);
+  }
+
+  // Written by the generated test driver; one line per test, with its wall time and trace bytes
+  @OutputFile
+  public Provider<RegularFile> getTestProfileFile() {
+    return getOutputDir().file(TestProfileListener.REPORT_FILE);
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.CHICORY_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.CHICORY_TASK_DESCRIPTION;
+  }
+}
@@ -0,0 +1,49 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import java.io.File;
+import java.nio.file.Path;
+import java.util.List;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.OutputFile;
+
+/**
+ * Runs Chicory and Daikon at the same time. Chicory streams the trace to Daikon over a local
+ * socket, so no dtrace file is written and Daikon's inference overlaps with the test driver's
+ * execution. Replaces {@code runChicory} and {@code inferInvariants} when {@code daikonOnline} is
+ * set.
+ */
+@CacheableTask
+@SuppressWarnings("UnstableApiUsage")
+public abstract class RunChicoryOnline extends AbstractChicoryStage {
+
+  @Override
+  protected void execChicory(
+      MainExecutor executor, List<File> classpath, List<String> selectPatterns, Path outputDir) {
+    executor.execChicoryOnline(
+        classpath,
+        selectPatterns,
+        getMainClass().get(),
+        getClassNamePrefix().get(),
+        outputDir);
+  }
+
+  // Named apart from inferInvariants' file, which shares the output directory
+  @OutputFile
+  public Provider<RegularFile> getInvariantsFile() {
+    return outputFile(Constants.ONLINE_INV_EXT);
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.CHICORY_ONLINE_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.CHICORY_ONLINE_TASK_DESCRIPTION;
+  }
+}
@@ -0,0 +1,232 @@
+package com.sri.gradle.daikon.tasks;
+
+import com.sri.gradle.daikon.Constants;
+import com.sri.gradle.daikon.internal.ComparabilityCache;
+import com.sri.gradle.daikon.internal.DeclsFile;
+import com.sri.gradle.daikon.internal.MainExecutor;
+import com.sri.gradle.daikon.internal.SelectPatterns;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import org.gradle.api.GradleException;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFile;
+import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.api.provider.Provider;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputFile;
+import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputFile;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+
+@CacheableTask
+@SuppressWarnings("UnstableApiUsage")
+public abstract class RunDynComp extends AbstractDaikonStage {
+
+  private final ListProperty<String> selectedClasses;
+  private final ListProperty<String> selectPatterns;
+  private final ListProperty<String> omitPatterns;
+  private final DirectoryProperty testClassesDir;
+  private final ConfigurableFileCollection projectClassesDirs;
+  private final DirectoryProperty cacheDir;
+  private final RegularFileProperty runtimeJar;
+
+  public RunDynComp() {
+    this.selectedClasses = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.selectPatterns = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.omitPatterns = getProject().getObjects().listProperty(String.class); // unchecked warning
+    this.testClassesDir = getProject().getObjects().directoryProperty(); // unchecked warning
+    this.projectClassesDirs = getProject().files();
+    this.cacheDir = getProject().getObjects().directoryProperty(); // unchecked warning
+    this.runtimeJar = getProject().getObjects().fileProperty(); // unchecked warning
+  }
+
+  @Override
+  protected void runStage(MainExecutor executor, List<File> classpath, Path outputDir) {
+    executor.useOmitPatterns(getOmitPatterns().get());
+    if (!getCacheDir().isPresent()) {
+      executor.execDynComp(
+          classpath,
+          SelectPatterns.orClasses(getSelectPatterns().get(), getSelectedClasses().get()),
+          getMainClass().get(),
+          getTestClassesDir().getAsFile().get().toPath(),
+          getRuntimeJar().getAsFile().getOrNull(),
+          outputDir);
+      return;
+    }
+
+    try {
+      runCached(executor, classpath);
+    } catch (IOException e) {
+      throw new GradleException("Unable to use the DynComp cache", e);
+    }
+  }
+
+  private void runCached(MainExecutor executor, List<File> classpath) throws IOException {
+    final List<File> toolClasspath = new ArrayList<>(classpath);
+    if (getRuntimeJar().isPresent()) {
+      toolClasspath.add(getRuntimeJar().getAsFile().get());
+    }
+
+    // e.g., a profile's --nesting-depth, which adds variables to every class's results
+    final List<String> toolOptions = new ArrayList<>(getToolOptions().get());
+    getOmitPatterns().get().forEach(each -> toolOptions.add("--ppt-omit-pattern=" + each));
+
+    final ComparabilityCache cache =
+        new ComparabilityCache(
+            getCacheDir().getAsFile().get().toPath(),
+            new ArrayList<>(getProjectClassesDirs().getFiles()),
+            toolClasspath,
+            toolOptions,
+            getMainClass().get());
+
+    final List<String> selectedClasses = getSelectedClasses().get();
+    final Map<String, String> keys = new HashMap<>();
+    final Map<String, String> fragments = new HashMap<>();
+    final List<String> changedClasses = new ArrayList<>();
+    for (String each : selectedClasses) {
+      final String key = cache.key(each);
+      final String fragment = key == null ? null : cache.load(key);
+      keys.put(each, key);
+      if (fragment == null) {
+        changedClasses.add(each);
+      } else {
+        fragments.put(each, fragment);
+      }
+    }
+
+    getLogger()
+        .info(
+            "Reusing DynComp results of {} classes; running DynComp on {}",
+            fragments.size(),
+            changedClasses.size());
+
+    String header = null;
+    for (String each : selectedClasses) {
+      if (header == null && !changedClasses.contains(each)) {
+        header = cache.loadHeader(keys.get(each));
+      }
+    }
+
+    if (!changedClasses.isEmpty()) {
+      final Path freshDir = getTemporaryDir().toPath();
+      final Path freshDecls = freshDir.resolve(getDeclsFile().get().getAsFile().getName());
+      Files.deleteIfExists(freshDecls);
+
+      executor.execDynComp(
+          classpath,
+          changedClasses,
+          getMainClass().get(),
+          getTestClassesDir().getAsFile().get().toPath(),
+          getRuntimeJar().getAsFile().getOrNull(),
+          freshDir);
+      executor.await();
+
+      final DeclsFile fresh = DeclsFile.read(freshDecls);
+      header = fresh.getHeader();
+
+      final Map<String, StringBuilder> owned = new HashMap<>();
+      fresh
+          .getFragments()
+          .forEach(
+              (pptClass, fragment) -> {
+                final String owner = owner(pptClass, selectedClasses);
+                if (changedClasses.contains(owner)) {
+                  final StringBuilder ownerFragment =
+                      owned.computeIfAbsent(owner, k -> new StringBuilder());
+                  ownerFragment.append(ownerFragment.length() > 0 ? "\n" : "").append(fragment);
+                }
+              });
+
+      for (String each : changedClasses) {
+        final String fragment = owned.getOrDefault(each, new StringBuilder()).toString();
+        fragments.put(each, fragment);
+        if (keys.get(each) != null) {
+          cache.storeHeader(keys.get(each), header);
+          cache.store(keys.get(each), fragment);
+        }
+      }
+    }
+
+    DeclsFile.write(
+        header == null ? DeclsFile.DEFAULT_HEADER : header,
+        selectedClasses.stream().map(fragments::get).collect(Collectors.toList()),
+        getDeclsFile().get().getAsFile().toPath());
+  }
+
+  private static String owner(String pptClass, List<String> selectedClasses) {
+    // e.g., com.foo.Bar$1 belongs to com.foo.Bar unless it was selected on its own
+    if (!selectedClasses.contains(pptClass) && pptClass.contains("$")) {
+      return pptClass.substring(0, pptClass.indexOf('$'));
+    }
+    return pptClass;
+  }
+
+  @Input
+  public ListProperty<String> getSelectedClasses() {
+    return this.selectedClasses;
+  }
+
+  // Supersede the selected classes when present; see SelectPatterns
+  @Input
+  public ListProperty<String> getSelectPatterns() {
+    return this.selectPatterns;
+  }
+
+  @Input
+  public ListProperty<String> getOmitPatterns() {
+    return this.omitPatterns;
+  }
+
+  // DynComp's working directory; the classes themselves are part of the classpath
+  @Internal
+  public DirectoryProperty getTestClassesDir() {
+    return this.testClassesDir;
+  }
+
+  // Only used to compute cache keys; the classes are part of the classpath
+  @Internal
+  public ConfigurableFileCollection getProjectClassesDirs() {
+    return this.projectClassesDirs;
+  }
+
+  // Where per-class results are kept across builds; unset runs DynComp on every selected class
+  @Internal
+  public DirectoryProperty getCacheDir() {
+    return this.cacheDir;
+  }
+
+  // Instrumented JDK; unset when dcomp_rt.jar is on the classpath
+  @InputFile
+  @Optional
+  @PathSensitive(PathSensitivity.NONE)
+  public RegularFileProperty getRuntimeJar() {
+    return this.runtimeJar;
+  }
+
+  @OutputFile
+  public Provider<RegularFile> getDeclsFile() {
+    return outputFile(Constants.DECLS_DYN_COMP_EXT);
+  }
+
+  @Override
+  protected String getTaskName() {
+    return Constants.DYN_COMP_TASK;
+  }
+
+  @Override
+  protected String getTaskDescription() {
+    return Constants.DYN_COMP_TASK_DESCRIPTION;
+  }
+}
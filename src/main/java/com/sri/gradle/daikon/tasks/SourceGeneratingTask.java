@@ -1,14 +1,17 @@
 package com.sri.gradle.daikon.tasks;
 
-import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableList;
 import com.sri.gradle.daikon.Constants;
-import com.sri.gradle.daikon.utils.Filefinder;
-import com.sri.gradle.daikon.utils.ImmutableStream;
-import com.sri.gradle.daikon.utils.JavaCode;
+import com.sri.gradle.daikon.internal.ClassIndex;
+import com.sri.gradle.daikon.internal.DirectoryScanService;
+import com.sri.gradle.daikon.utils.ClassFileWriter;
 import com.sri.gradle.daikon.utils.JavaProjectHelper;
 import com.sri.gradle.daikon.utils.MoreFiles;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collection;
@@ -16,21 +19,62 @@ import java.util.List;
 import java.util.Objects;
 import org.gradle.api.GradleException;
 import org.gradle.api.file.Directory;
+import org.gradle.api.file.DirectoryProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Internal;
+import org.gradle.api.tasks.OutputDirectory;
 import org.gradle.api.tasks.TaskAction;
 
 public class SourceGeneratingTask extends AbstractNamedTask {
+  // Class literals per nested class of the generated driver
+  static final int CLASSES_PER_CHUNK = 1000;
+  // Lists the test classes next to a driver emitted as bytecode
+  static final String TEST_CLASSES_RESOURCE_EXT = ".classes";
+
+  // Opcodes used by the driver's bytecode
+  private static final int ICONST_0 = 0x03;
+  private static final int ICONST_2 = 0x05;
+  private static final int LDC_W = 0x13;
+  private static final int ALOAD = 0x19;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int ALOAD_2 = 0x2c;
+  private static final int ALOAD_3 = 0x2d;
+  private static final int ASTORE = 0x3a;
+  private static final int ASTORE_1 = 0x4c;
+  private static final int ASTORE_2 = 0x4d;
+  private static final int ASTORE_3 = 0x4e;
+  private static final int AASTORE = 0x53;
+  private static final int POP = 0x57;
+  private static final int DUP = 0x59;
+  private static final int GOTO = 0xa7;
+  private static final int RETURN = 0xb1;
+  private static final int GETSTATIC = 0xb2;
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKESTATIC = 0xb8;
+  private static final int NEW = 0xbb;
+  private static final int ANEWARRAY = 0xbd;
+  private static final int CHECKCAST = 0xc0;
+  private static final int IFNULL = 0xc6;
+
   // Read-only fields
   @Internal private final Property<String> testDriverPackage;
+  @Internal private final Property<DirectoryScanService> directoryScans;
+  @Internal private final Property<Boolean> emitBytecode;
+  private final DirectoryProperty driverClassesDir;
 
   public SourceGeneratingTask() {
     testDriverPackage = getProject().getObjects().property(String.class);
+    directoryScans = getProject().getObjects().property(DirectoryScanService.class);
+    emitBytecode = getProject().getObjects().property(Boolean.class).convention(false);
+    driverClassesDir = getProject().getObjects().directoryProperty(); // unchecked warning
   }
 
   @TaskAction
   public void generateTestDriverCode() {
     final JavaProjectHelper projectHelper = new JavaProjectHelper(getProject());
+    // A driver class left from an earlier run would be picked over the project's own driver
+    getProject().delete(getDriverClassesDir());
 
     // Automatically guessing whether there is a test driver in the project
     // is challenging and error prone. Only the maintainer of the project knows
@@ -44,6 +88,12 @@ public class SourceGeneratingTask extends AbstractNamedTask {
       return;
     }
 
+    final DirectoryScanService scans = getDirectoryScans().get();
+    if (getEmitBytecode().get()) {
+      writeTestDriverClass(projectHelper, scans);
+      return;
+    }
+
     final File testDriverOutputDir = projectHelper.getDriverDir();
 
     if (!Files.exists(testDriverOutputDir.toPath())) {
@@ -53,7 +103,9 @@ public class SourceGeneratingTask extends AbstractNamedTask {
     }
 
     // If the test driver java class exist then don't generate anything
-    String mainClass = projectHelper.findDriverClass().orElse(null);
+    String mainClass =
+        JavaProjectHelper.findDriverClass(scans.findJavaFiles(testDriverOutputDir.toPath()))
+            .orElse(null);
 
     if (Constants.TEST_DRIVER_CLASSNAME.equals(mainClass)){
       getProject().getLogger().quiet(Constants.DRIVER_EXIST);
@@ -68,35 +120,337 @@ public class SourceGeneratingTask extends AbstractNamedTask {
     }
 
     final String testDriverPackage = getTestDriverPackage().get();
-    final List<String> testClassNames = getTestClassNames(projectHelper, testDriverPackage);
+    final List<String> testClassNames = getTestClassNames(projectHelper, scans, testDriverPackage);
+
+    // Streamed, since suites may have tens of thousands of test classes
+    try (Writer out = Files.newBufferedWriter(testDriverJavaFile.toPath(), Constants.ENCODING)) {
+      writeTestDriverCode(testDriverPackage, testClassNames, out);
+    } catch (IOException e) {
+      throw new GradleException("Unable to write " + testDriverJavaFile, e);
+    }
+
+    getProject().getLogger().debug(Constants.SUCCESSFUL_CODE_GENERATION);
+  }
+
+  private void writeTestDriverClass(JavaProjectHelper projectHelper, DirectoryScanService scans) {
+    final String testDriverPackage = getTestDriverPackage().get();
+    final List<String> testClassNames = getTestClassNames(projectHelper, scans, testDriverPackage);
 
-    final JavaCode testDriverCode = generateTestDriverCode(testDriverPackage, testClassNames);
-    final File writtenTestDriverCode = testDriverCode.writeTo(testDriverOutputDir);
-    if (writtenTestDriverCode == null) {
-      throw new GradleException("Unable to write code; java file is null.");
+    // Not next to the test classes, which belong to compileTestJava
+    final Path classesDir =
+        getDriverClassesDir()
+            .dir(testDriverPackage.replaceAll("\\.", Constants.FILE_SEPARATOR))
+            .get()
+            .getAsFile()
+            .toPath();
+    final Path classFile = classesDir.resolve(Constants.TEST_DRIVER_CLASSNAME + ".class");
+    final Path resource =
+        classesDir.resolve(Constants.TEST_DRIVER_CLASSNAME + TEST_CLASSES_RESOURCE_EXT);
+    try {
+      Files.createDirectories(classesDir);
+      Files.write(resource, testClassNames, Constants.ENCODING);
+      Files.write(classFile, generateTestDriverClass(testDriverPackage));
+    } catch (IOException e) {
+      throw new GradleException("Unable to write " + classFile, e);
     }
 
     getProject().getLogger().debug(Constants.SUCCESSFUL_CODE_GENERATION);
   }
 
-  static JavaCode generateTestDriverCode(
-      String testDriverPackage, Collection<String> testClassNames) {
-    final String joinedTestClasses =
-        Joiner.on(", ")
-            .join(ImmutableStream.listCopyOf(testClassNames.stream().map(s -> s + ".class")));
-
-    return JavaCode.classBuilder(Constants.TEST_DRIVER_CLASSNAME)
-        .addPackageName(testDriverPackage)
-        .addImports("org.junit.runner.Result", "org.junit.runner.JUnitCore")
-        .addStaticMainMethod(
-            "final Result result = JUnitCore.runClasses(" + joinedTestClasses + ");",
-            "System.out.printf(\"Test ran: %s, Failed: %s%n\",",
-            "\t\t\t\tresult.getRunCount(), result.getFailureCount());")
-        .build();
+  /**
+   * Streams the test driver's source to a writer. The test classes are listed in nested classes
+   * of at most {@value #CLASSES_PER_CHUNK} classes each, so the driver compiles no matter how many
+   * test classes there are: each nested class gets its own constant pool, and its initializer
+   * stays well below the JVM's 64KB method size limit.
+   *
+   * @param testDriverPackage the driver's package
+   * @param testClassNames binary names of the classes the driver runs
+   * @param out where the source goes
+   * @throws IOException if writing fails
+   */
+  static void writeTestDriverCode(
+      String testDriverPackage, Collection<String> testClassNames, Writer out)
+      throws IOException {
+    final String nl = Constants.NEW_LINE;
+    final String indent = Constants.DOUBLE_SPACE;
+
+    out.write("package " + testDriverPackage + ";" + nl + nl);
+    out.write("import java.util.ArrayList;" + nl);
+    out.write("import java.util.Collections;" + nl);
+    out.write("import java.util.List;" + nl);
+    out.write("import org.junit.runner.JUnitCore;" + nl);
+    out.write("import org.junit.runner.Result;" + nl);
+    out.write("import org.junit.runner.notification.RunListener;" + nl + nl);
+    out.write("// Auto-generated class." + nl);
+    out.write("public final class " + Constants.TEST_DRIVER_CLASSNAME + " {" + nl);
+
+    out.write(indent + "public static void main(String... args) throws Exception {" + nl);
+    out.write(indent + indent + "final JUnitCore core = new JUnitCore();" + nl);
+    out.write(indent + indent + "addProfileListener(core);" + nl);
+    out.write(indent + indent + "final Result result = core.run(testClasses());" + nl);
+    out.write(indent + indent + "System.out.printf(\"Test ran: %s, Failed: %s%n\"," + nl);
+    out.write(
+        indent + indent + indent + indent + "result.getRunCount(), result.getFailureCount());" + nl);
+    out.write(indent + "}" + nl);
+
+    // The listener is only on the classpath when Chicory runs the driver
+    out.write(nl + indent + "private static void addProfileListener(JUnitCore core) {" + nl);
+    out.write(indent + indent + "try {" + nl);
+    out.write(
+        indent + indent + indent + "final Class<?> listener = Class.forName(\""
+            + Constants.TEST_PROFILE_LISTENER + "\");" + nl);
+    out.write(
+        indent + indent + indent
+            + "core.addListener((RunListener) listener.getDeclaredConstructor().newInstance());"
+            + nl);
+    out.write(indent + indent + "} catch (ReflectiveOperationException ignored) {" + nl);
+    out.write(indent + indent + "}" + nl);
+    out.write(indent + "}" + nl);
+
+    final int chunks = (testClassNames.size() + CLASSES_PER_CHUNK - 1) / CLASSES_PER_CHUNK;
+    out.write(nl + indent + "private static Class<?>[] testClasses() {" + nl);
+    out.write(indent + indent + "final List<Class<?>> classes = new ArrayList<>();" + nl);
+    for (int idx = 0; idx < chunks; idx++) {
+      out.write(indent + indent + "Collections.addAll(classes, Classes" + idx + ".CLASSES);" + nl);
+    }
+    out.write(indent + indent + "return classes.toArray(new Class<?>[0]);" + nl);
+    out.write(indent + "}" + nl);
+
+    int written = 0;
+    for (String each : testClassNames) {
+      if (written % CLASSES_PER_CHUNK == 0) {
+        final int chunk = written / CLASSES_PER_CHUNK;
+        out.write(nl + indent + "private static final class Classes" + chunk + " {" + nl);
+        out.write(indent + indent + "static final Class<?>[] CLASSES = {" + nl);
+      }
+
+      // Nested classes are referred to with dots in source code
+      out.write(indent + indent + indent + each.replace('$', '.') + ".class," + nl);
+      written++;
+
+      if (written % CLASSES_PER_CHUNK == 0 || written == testClassNames.size()) {
+        out.write(indent + indent + "};" + nl);
+        out.write(indent + "}" + nl);
+      }
+    }
+
+    out.write("}" + nl);
+  }
+
+  /**
+   * Assembles the test driver's class file, which does what {@link #writeTestDriverCode} does but
+   * reads the test class names from the {@value #TEST_CLASSES_RESOURCE_EXT} resource next to it,
+   * one per line. Equivalent to:
+   *
+   * <pre>
+   * BufferedReader reader = new BufferedReader(new InputStreamReader(
+   *     AutoGeneratedTestDriver.class.getResourceAsStream("AutoGeneratedTestDriver.classes"), "UTF-8"));
+   * ArrayList classes = new ArrayList();
+   * String line;
+   * while ((line = reader.readLine()) != null) classes.add(Class.forName(line));
+   * JUnitCore core = new JUnitCore();
+   * if (AutoGeneratedTestDriver.class.getClassLoader().getResource(listenerClassFile) != null)
+   *   core.addListener((RunListener) Class.forName(listener).newInstance());
+   * Result result = core.run((Class[]) classes.toArray(new Class[0]));
+   * System.out.printf("Test ran: %s, Failed: %s%n", result.getRunCount(), result.getFailureCount());
+   * </pre>
+   *
+   * @param testDriverPackage the driver's package
+   * @return the class file's content
+   */
+  static byte[] generateTestDriverClass(String testDriverPackage) {
+    final String driver =
+        testDriverPackage.isEmpty()
+            ? Constants.TEST_DRIVER_CLASSNAME
+            : testDriverPackage.replace('.', '/') + "/" + Constants.TEST_DRIVER_CLASSNAME;
+    final ClassFileWriter cw =
+        new ClassFileWriter(
+            driver, ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL | ClassFileWriter.ACC_SUPER);
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream code = new DataOutputStream(bytes)) {
+      // InputStream in = AutoGeneratedTestDriver.class.getResourceAsStream(...);
+      code.writeByte(LDC_W);
+      code.writeShort(cw.classRef(driver));
+      code.writeByte(LDC_W);
+      code.writeShort(cw.string(Constants.TEST_DRIVER_CLASSNAME + TEST_CLASSES_RESOURCE_EXT));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(
+          cw.methodRef(
+              "java/lang/Class", "getResourceAsStream", "(Ljava/lang/String;)Ljava/io/InputStream;"));
+      code.writeByte(ASTORE_1);
+
+      // BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"));
+      code.writeByte(NEW);
+      code.writeShort(cw.classRef("java/io/BufferedReader"));
+      code.writeByte(DUP);
+      code.writeByte(NEW);
+      code.writeShort(cw.classRef("java/io/InputStreamReader"));
+      code.writeByte(DUP);
+      code.writeByte(ALOAD_1);
+      code.writeByte(LDC_W);
+      code.writeShort(cw.string(Constants.ENCODING.name()));
+      code.writeByte(INVOKESPECIAL);
+      code.writeShort(
+          cw.methodRef(
+              "java/io/InputStreamReader", "<init>", "(Ljava/io/InputStream;Ljava/lang/String;)V"));
+      code.writeByte(INVOKESPECIAL);
+      code.writeShort(cw.methodRef("java/io/BufferedReader", "<init>", "(Ljava/io/Reader;)V"));
+      code.writeByte(ASTORE_2);
+
+      // ArrayList classes = new ArrayList();
+      code.writeByte(NEW);
+      code.writeShort(cw.classRef("java/util/ArrayList"));
+      code.writeByte(DUP);
+      code.writeByte(INVOKESPECIAL);
+      code.writeShort(cw.methodRef("java/util/ArrayList", "<init>", "()V"));
+      code.writeByte(ASTORE_3);
+
+      // while ((line = reader.readLine()) != null) classes.add(Class.forName(line));
+      final int loop = code.size();
+      code.writeByte(ALOAD_2);
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(cw.methodRef("java/io/BufferedReader", "readLine", "()Ljava/lang/String;"));
+      code.writeByte(DUP);
+      code.writeByte(ASTORE);
+      code.writeByte(4);
+      final int exitBranch = code.size();
+      code.writeByte(IFNULL);
+      code.writeShort(0); // patched below
+      code.writeByte(ALOAD_3);
+      code.writeByte(ALOAD);
+      code.writeByte(4);
+      code.writeByte(INVOKESTATIC);
+      code.writeShort(
+          cw.methodRef("java/lang/Class", "forName", "(Ljava/lang/String;)Ljava/lang/Class;"));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(cw.methodRef("java/util/ArrayList", "add", "(Ljava/lang/Object;)Z"));
+      code.writeByte(POP);
+      code.writeByte(GOTO);
+      code.writeShort(loop - (code.size() - 1));
+      final int exit = code.size();
+
+      // JUnitCore core = new JUnitCore();
+      code.writeByte(NEW);
+      code.writeShort(cw.classRef("org/junit/runner/JUnitCore"));
+      code.writeByte(DUP);
+      code.writeByte(INVOKESPECIAL);
+      code.writeShort(cw.methodRef("org/junit/runner/JUnitCore", "<init>", "()V"));
+      code.writeByte(ASTORE);
+      code.writeByte(6);
+
+      // if (AutoGeneratedTestDriver.class.getClassLoader().getResource(listener) != null)
+      //   core.addListener((RunListener) Class.forName(listener).newInstance());
+      code.writeByte(LDC_W);
+      code.writeShort(cw.classRef(driver));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(
+          cw.methodRef("java/lang/Class", "getClassLoader", "()Ljava/lang/ClassLoader;"));
+      code.writeByte(LDC_W);
+      code.writeShort(cw.string(Constants.TEST_PROFILE_LISTENER.replace('.', '/') + ".class"));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(
+          cw.methodRef("java/lang/ClassLoader", "getResource", "(Ljava/lang/String;)Ljava/net/URL;"));
+      final int skipBranch = code.size();
+      code.writeByte(IFNULL);
+      code.writeShort(0); // patched below
+      code.writeByte(ALOAD);
+      code.writeByte(6);
+      code.writeByte(LDC_W);
+      code.writeShort(cw.string(Constants.TEST_PROFILE_LISTENER));
+      code.writeByte(INVOKESTATIC);
+      code.writeShort(
+          cw.methodRef("java/lang/Class", "forName", "(Ljava/lang/String;)Ljava/lang/Class;"));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(cw.methodRef("java/lang/Class", "newInstance", "()Ljava/lang/Object;"));
+      code.writeByte(CHECKCAST);
+      code.writeShort(cw.classRef("org/junit/runner/notification/RunListener"));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(
+          cw.methodRef(
+              "org/junit/runner/JUnitCore",
+              "addListener",
+              "(Lorg/junit/runner/notification/RunListener;)V"));
+      final int skip = code.size();
+
+      // Result result = core.run((Class[]) classes.toArray(new Class[0]));
+      code.writeByte(ALOAD);
+      code.writeByte(6);
+      code.writeByte(ALOAD_3);
+      code.writeByte(ICONST_0);
+      code.writeByte(ANEWARRAY);
+      code.writeShort(cw.classRef("java/lang/Class"));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(
+          cw.methodRef(
+              "java/util/ArrayList", "toArray", "([Ljava/lang/Object;)[Ljava/lang/Object;"));
+      code.writeByte(CHECKCAST);
+      code.writeShort(cw.classRef("[Ljava/lang/Class;"));
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(
+          cw.methodRef(
+              "org/junit/runner/JUnitCore", "run", "([Ljava/lang/Class;)Lorg/junit/runner/Result;"));
+      code.writeByte(ASTORE);
+      code.writeByte(5);
+
+      // System.out.printf("Test ran: %s, Failed: %s%n", runCount, failureCount);
+      code.writeByte(GETSTATIC);
+      code.writeShort(cw.fieldRef("java/lang/System", "out", "Ljava/io/PrintStream;"));
+      code.writeByte(LDC_W);
+      code.writeShort(cw.string("Test ran: %s, Failed: %s%n"));
+      code.writeByte(ICONST_2);
+      code.writeByte(ANEWARRAY);
+      code.writeShort(cw.classRef("java/lang/Object"));
+      final String[] counts = {"getRunCount", "getFailureCount"};
+      for (int idx = 0; idx < counts.length; idx++) {
+        code.writeByte(DUP);
+        code.writeByte(ICONST_0 + idx);
+        code.writeByte(ALOAD);
+        code.writeByte(5);
+        code.writeByte(INVOKEVIRTUAL);
+        code.writeShort(cw.methodRef("org/junit/runner/Result", counts[idx], "()I"));
+        code.writeByte(INVOKESTATIC);
+        code.writeShort(
+            cw.methodRef("java/lang/Integer", "valueOf", "(I)Ljava/lang/Integer;"));
+        code.writeByte(AASTORE);
+      }
+      code.writeByte(INVOKEVIRTUAL);
+      code.writeShort(
+          cw.methodRef(
+              "java/io/PrintStream",
+              "printf",
+              "(Ljava/lang/String;[Ljava/lang/Object;)Ljava/io/PrintStream;"));
+      code.writeByte(POP);
+      code.writeByte(RETURN);
+
+      code.flush();
+      final byte[] body = bytes.toByteArray();
+      patchBranch(body, exitBranch, exit);
+      patchBranch(body, skipBranch, skip);
+      cw.addMethod(
+          ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+          "main",
+          "([Ljava/lang/String;)V",
+          6,
+          7,
+          body);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+
+    return cw.toByteArray();
   }
 
-  static List<String> getTestClassNames(JavaProjectHelper projectHelper, String testDriverPackage) {
+  private static void patchBranch(byte[] code, int branch, int target) {
+    final int offset = target - branch;
+    code[branch + 1] = (byte) (offset >> 8);
+    code[branch + 2] = (byte) offset;
+  }
+
+  static List<String> getTestClassNames(
+      JavaProjectHelper projectHelper, DirectoryScanService scans, String testDriverPackage) {
     Objects.requireNonNull(projectHelper);
+    Objects.requireNonNull(scans);
     Objects.requireNonNull(testDriverPackage);
 
     if (testDriverPackage.isEmpty()) return ImmutableList.of();
@@ -106,15 +460,31 @@ public class SourceGeneratingTask extends AbstractNamedTask {
     final String testpath = testDriverPackage.replaceAll("\\.", Constants.FILE_SEPARATOR);
     final Path testClassesDir = buildTestDir.dir(testpath).getAsFile().toPath();
 
-    final List<File> allTestClasses =
-        Filefinder.findJavaClasses(testClassesDir, "$" /*exclude those that contain this symbol*/);
-    return ImmutableList.copyOf(MoreFiles.getTestClassNames(allTestClasses));
+    // Only classes that do have tests, so JUnitCore doesn't fail on helper classes
+    final ClassIndex classIndex =
+        new ClassIndex(
+            projectHelper.getBuildDir().file(Constants.CLASS_INDEX_FILE).get().getAsFile().toPath());
+    return ClassIndex.testClasses(scans.summarizeClasses(testClassesDir, classIndex));
   }
 
   public Property<String> getTestDriverPackage() {
     return this.testDriverPackage;
   }
 
+  public Property<DirectoryScanService> getDirectoryScans() {
+    return this.directoryScans;
+  }
+
+  public Property<Boolean> getEmitBytecode() {
+    return this.emitBytecode;
+  }
+
+  // Only written to when the driver is emitted as bytecode; the stages have it on their classpath
+  @OutputDirectory
+  public DirectoryProperty getDriverClassesDir() {
+    return this.driverClassesDir;
+  }
+
   @Override
   protected String getTaskName() {
     return Constants.CODE_GEN_TASK;
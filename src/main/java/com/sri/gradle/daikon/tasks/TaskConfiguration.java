@@ -1,5 +0,0 @@
-package com.sri.gradle.daikon.tasks;
-
-public interface TaskConfiguration {
-  void configure(TaskExecutor executor);
-}
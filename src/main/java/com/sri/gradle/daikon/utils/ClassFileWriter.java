@@ -0,0 +1,179 @@
+package com.sri.gradle.daikon.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a class file with static methods only: no fields, no constructor, and no interfaces.
+ * Method code is assembled by the caller, using the constant pool indexes this writer hands out.
+ *
+ * <p>Classes are written as version 49 (Java 5), the last version verified without stack map
+ * frames, so that method code with branches needs no frame computation.
+ */
+public class ClassFileWriter {
+  public static final int ACC_PUBLIC = 0x0001;
+  public static final int ACC_STATIC = 0x0008;
+  public static final int ACC_FINAL = 0x0010;
+  public static final int ACC_SUPER = 0x0020;
+
+  private static final int VERSION = 49;
+
+  private final ByteArrayOutputStream poolBytes = new ByteArrayOutputStream();
+  private final DataOutputStream pool = new DataOutputStream(poolBytes);
+  private final Map<String, Integer> poolIndexes = new HashMap<>();
+  private final List<byte[]> methods = new ArrayList<>();
+  private int poolSize = 1;
+
+  private final int thisClass;
+  private final int superClass;
+  private final int access;
+
+  /**
+   * @param internalName the class's internal name; e.g., {@code com/foo/Bar}
+   * @param access the class's access flags; e.g., {@code ACC_PUBLIC | ACC_FINAL | ACC_SUPER}
+   */
+  public ClassFileWriter(String internalName, int access) {
+    this.access = access;
+    this.thisClass = classRef(internalName);
+    this.superClass = classRef("java/lang/Object");
+  }
+
+  public int utf8(String value) {
+    return constant("Utf8:" + value, out -> {
+      out.writeByte(1);
+      out.writeUTF(value);
+    });
+  }
+
+  /** @param internalName a class's internal name, or an array descriptor */
+  public int classRef(String internalName) {
+    final int name = utf8(internalName);
+    return constant("Class:" + internalName, out -> {
+      out.writeByte(7);
+      out.writeShort(name);
+    });
+  }
+
+  public int string(String value) {
+    final int utf8 = utf8(value);
+    return constant("String:" + value, out -> {
+      out.writeByte(8);
+      out.writeShort(utf8);
+    });
+  }
+
+  public int fieldRef(String owner, String name, String descriptor) {
+    return memberRef(9, owner, name, descriptor);
+  }
+
+  public int methodRef(String owner, String name, String descriptor) {
+    return memberRef(10, owner, name, descriptor);
+  }
+
+  /**
+   * Adds a method.
+   *
+   * @param access the method's access flags
+   * @param name the method's name
+   * @param descriptor the method's descriptor; e.g., {@code ([Ljava/lang/String;)V}
+   * @param maxStack the deepest operand stack the code reaches
+   * @param maxLocals the number of local variable slots, including the parameters
+   * @param code the method's bytecode
+   */
+  public void addMethod(
+      int access, String name, String descriptor, int maxStack, int maxLocals, byte[] code) {
+    final int nameIndex = utf8(name);
+    final int descriptorIndex = utf8(descriptor);
+    final int codeAttribute = utf8("Code");
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeShort(access);
+      out.writeShort(nameIndex);
+      out.writeShort(descriptorIndex);
+      out.writeShort(1); // attributes
+      out.writeShort(codeAttribute);
+      out.writeInt(12 + code.length);
+      out.writeShort(maxStack);
+      out.writeShort(maxLocals);
+      out.writeInt(code.length);
+      out.write(code);
+      out.writeShort(0); // exception table
+      out.writeShort(0); // code attributes
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    methods.add(bytes.toByteArray());
+  }
+
+  /** @return the class file's content */
+  public byte[] toByteArray() {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(0xCAFEBABE);
+      out.writeShort(0); // minor version
+      out.writeShort(VERSION);
+      out.writeShort(poolSize);
+      pool.flush();
+      poolBytes.writeTo(out);
+      out.writeShort(access);
+      out.writeShort(thisClass);
+      out.writeShort(superClass);
+      out.writeShort(0); // interfaces
+      out.writeShort(0); // fields
+      out.writeShort(methods.size());
+      for (byte[] each : methods) {
+        out.write(each);
+      }
+      out.writeShort(0); // class attributes
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return bytes.toByteArray();
+  }
+
+  private int memberRef(int tag, String owner, String name, String descriptor) {
+    final int ownerIndex = classRef(owner);
+    final int nameIndex = utf8(name);
+    final int descriptorIndex = utf8(descriptor);
+    final int nameAndType =
+        constant("NameAndType:" + name + descriptor, out -> {
+          out.writeByte(12);
+          out.writeShort(nameIndex);
+          out.writeShort(descriptorIndex);
+        });
+    return constant(tag + ":" + owner + "." + name + descriptor, out -> {
+      out.writeByte(tag);
+      out.writeShort(ownerIndex);
+      out.writeShort(nameAndType);
+    });
+  }
+
+  private int constant(String key, Entry entry) {
+    final Integer existing = poolIndexes.get(key);
+    if (existing != null) {
+      return existing;
+    }
+
+    if (poolSize == 0xFFFF) {
+      throw new IllegalStateException("Constant pool is full");
+    }
+
+    try {
+      entry.writeTo(pool);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    poolIndexes.put(key, poolSize);
+    return poolSize++;
+  }
+
+  private interface Entry {
+    void writeTo(DataOutputStream out) throws IOException;
+  }
+}
@@ -0,0 +1,288 @@
+package com.sri.gradle.daikon.utils;
+
+import com.google.common.collect.ImmutableSet;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class ClassFiles {
+  private static final int MAGIC = 0xCAFEBABE;
+  private static final Pattern DESCRIPTOR_CLASS = Pattern.compile("L([\\w/$]+);");
+  private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+  // Only JUnit 4's; the generated driver runs tests with JUnitCore, which can't run JUnit 5's
+  private static final Set<String> TEST_ANNOTATIONS = ImmutableSet.of("Lorg/junit/Test;");
+  private static final Set<String> RUNNER_ANNOTATIONS = ImmutableSet.of("Lorg/junit/runner/RunWith;");
+
+  private static final int ACC_PUBLIC = 0x0001;
+  private static final int ACC_STATIC = 0x0008;
+  private static final int ACC_INTERFACE = 0x0200;
+  private static final int ACC_ABSTRACT = 0x0400;
+
+  private ClassFiles() {
+    throw new Error("Cannot be instantiated");
+  }
+
+  /**
+   * Lists the classes a class file refers to, read from its constant pool: class entries plus the
+   * types in field and method descriptors.
+   *
+   * @param classBytes the class file's content
+   * @return binary names of the referenced classes; e.g., {@code com.foo.Bar$Baz}
+   * @throws IOException if the bytes are not a class file
+   */
+  public static Set<String> referencedClasses(byte[] classBytes) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(classBytes));
+    final ConstantPool pool = ConstantPool.read(in);
+
+    final Set<String> classes = new TreeSet<>();
+    for (int each : pool.classNameIndexes.values()) {
+      final String name = pool.utf8[each];
+      // Array classes are named by their descriptor; e.g., [Lcom/foo/Bar;
+      if (name != null && !name.startsWith("[")) {
+        classes.add(name.replace('/', '.'));
+      }
+    }
+
+    for (String each : pool.utf8) {
+      if (each == null) {
+        continue;
+      }
+
+      final Matcher matcher = DESCRIPTOR_CLASS.matcher(each);
+      while (matcher.find()) {
+        classes.add(matcher.group(1).replace('/', '.'));
+      }
+    }
+
+    return classes;
+  }
+
+  /**
+   * Reads what test discovery needs from a class file: its name, superclass, and access flags,
+   * whether it declares {@code public static void main(String[])}, and whether it's annotated or
+   * declares methods annotated as JUnit 4 tests. Method bodies are skipped. JUnit 3
+   * tests are not annotated; they are told by their superclass instead.
+   *
+   * @param classBytes the class file's content
+   * @return the class's summary
+   * @throws IOException if the bytes are not a class file
+   */
+  public static Summary summarize(byte[] classBytes) throws IOException {
+    final DataInputStream in = new DataInputStream(new ByteArrayInputStream(classBytes));
+    final ConstantPool pool = ConstantPool.read(in);
+
+    final int access = in.readUnsignedShort();
+    final String name = pool.className(in.readUnsignedShort());
+    final String superName = pool.className(in.readUnsignedShort());
+    in.skipBytes(2 * in.readUnsignedShort()); // interfaces
+
+    final int fieldCount = in.readUnsignedShort();
+    for (int idx = 0; idx < fieldCount; idx++) {
+      in.skipBytes(6); // access, name, descriptor
+      skipAttributes(in);
+    }
+
+    boolean hasMain = false;
+    boolean hasTests = false;
+    final int methodCount = in.readUnsignedShort();
+    for (int idx = 0; idx < methodCount; idx++) {
+      final int methodAccess = in.readUnsignedShort();
+      final String methodName = pool.utf8[in.readUnsignedShort()];
+      final String descriptor = pool.utf8[in.readUnsignedShort()];
+      hasMain |=
+          (methodAccess & (ACC_PUBLIC | ACC_STATIC)) == (ACC_PUBLIC | ACC_STATIC)
+              && "main".equals(methodName)
+              && "([Ljava/lang/String;)V".equals(descriptor);
+      hasTests |= hasAnnotation(in, pool, TEST_ANNOTATIONS);
+    }
+
+    // Classes run with a JUnit 4 runner count as tests; e.g., suites
+    hasTests |= hasAnnotation(in, pool, RUNNER_ANNOTATIONS);
+    return new Summary(name, superName, access, hasMain, hasTests);
+  }
+
+  private static void skipAttributes(DataInputStream in) throws IOException {
+    final int count = in.readUnsignedShort();
+    for (int idx = 0; idx < count; idx++) {
+      in.skipBytes(2); // name
+      in.skipBytes(in.readInt());
+    }
+  }
+
+  /** Reads an attribute table, telling whether its annotations include any of the given ones. */
+  private static boolean hasAnnotation(
+      DataInputStream in, ConstantPool pool, Set<String> annotationDescriptors) throws IOException {
+    boolean found = false;
+    final int count = in.readUnsignedShort();
+    for (int idx = 0; idx < count; idx++) {
+      final String attribute = pool.utf8[in.readUnsignedShort()];
+      final int length = in.readInt();
+      if (!RUNTIME_VISIBLE_ANNOTATIONS.equals(attribute)) {
+        in.skipBytes(length);
+        continue;
+      }
+
+      final int annotations = in.readUnsignedShort();
+      for (int each = 0; each < annotations; each++) {
+        found |= annotationDescriptors.contains(pool.utf8[in.readUnsignedShort()]);
+        skipElementValuePairs(in);
+      }
+    }
+    return found;
+  }
+
+  private static void skipElementValuePairs(DataInputStream in) throws IOException {
+    final int pairs = in.readUnsignedShort();
+    for (int idx = 0; idx < pairs; idx++) {
+      in.skipBytes(2); // element name
+      skipElementValue(in);
+    }
+  }
+
+  private static void skipElementValue(DataInputStream in) throws IOException {
+    final int tag = in.readUnsignedByte();
+    switch (tag) {
+      case 'e': // enum constant
+        in.skipBytes(4);
+        break;
+      case '@': // nested annotation
+        in.skipBytes(2);
+        skipElementValuePairs(in);
+        break;
+      case '[':
+        final int values = in.readUnsignedShort();
+        for (int idx = 0; idx < values; idx++) {
+          skipElementValue(in);
+        }
+        break;
+      default: // constants and classes
+        in.skipBytes(2);
+    }
+  }
+
+  /** What {@link #summarize(byte[])} reads from a class file. */
+  public static final class Summary {
+    private final String name;
+    private final String superName;
+    private final int access;
+    private final boolean hasMain;
+    private final boolean hasTests;
+
+    public Summary(String name, String superName, int access, boolean hasMain, boolean hasTests) {
+      this.name = name;
+      this.superName = superName;
+      this.access = access;
+      this.hasMain = hasMain;
+      this.hasTests = hasTests;
+    }
+
+    /** @return the class's binary name; e.g., {@code com.foo.Bar$Baz} */
+    public String getName() {
+      return name;
+    }
+
+    /** @return the superclass's binary name; null for java.lang.Object */
+    public String getSuperName() {
+      return superName;
+    }
+
+    public int getAccess() {
+      return access;
+    }
+
+    /** @return true if the class is public */
+    public boolean isPublic() {
+      return (access & ACC_PUBLIC) != 0;
+    }
+
+    /** @return true if the class can be instantiated; i.e., it's neither abstract nor an interface */
+    public boolean isConcrete() {
+      return (access & (ACC_ABSTRACT | ACC_INTERFACE)) == 0;
+    }
+
+    /** @return true if the class declares {@code public static void main(String[])} */
+    public boolean hasMain() {
+      return hasMain;
+    }
+
+    /** @return true if the class declares test methods or is run with a JUnit 4 runner */
+    public boolean hasTests() {
+      return hasTests;
+    }
+  }
+
+  private static final class ConstantPool {
+    final String[] utf8;
+    // Class entry index -> its name's Utf8 index
+    final Map<Integer, Integer> classNameIndexes;
+
+    private ConstantPool(String[] utf8, Map<Integer, Integer> classNameIndexes) {
+      this.utf8 = utf8;
+      this.classNameIndexes = classNameIndexes;
+    }
+
+    String className(int classIndex) {
+      final Integer nameIndex = classNameIndexes.get(classIndex);
+      return nameIndex == null ? null : utf8[nameIndex].replace('/', '.');
+    }
+
+    static ConstantPool read(DataInputStream in) throws IOException {
+      if (in.readInt() != MAGIC) {
+        throw new IOException("Not a class file");
+      }
+
+      in.readUnsignedShort(); // minor version
+      in.readUnsignedShort(); // major version
+
+      final int poolSize = in.readUnsignedShort();
+      final String[] utf8 = new String[poolSize];
+      final Map<Integer, Integer> classNameIndexes = new HashMap<>();
+      for (int idx = 1; idx < poolSize; idx++) {
+        final int tag = in.readUnsignedByte();
+        switch (tag) {
+          case 1: // Utf8
+            utf8[idx] = in.readUTF();
+            break;
+          case 7: // Class
+            classNameIndexes.put(idx, in.readUnsignedShort());
+            break;
+          case 8: // String
+          case 16: // MethodType
+          case 19: // Module
+          case 20: // Package
+            in.readUnsignedShort();
+            break;
+          case 15: // MethodHandle
+            in.readUnsignedByte();
+            in.readUnsignedShort();
+            break;
+          case 3: // Integer
+          case 4: // Float
+          case 9: // Fieldref
+          case 10: // Methodref
+          case 11: // InterfaceMethodref
+          case 12: // NameAndType
+          case 17: // Dynamic
+          case 18: // InvokeDynamic
+            in.readInt();
+            break;
+          case 5: // Long
+          case 6: // Double
+            in.readLong();
+            idx++; // takes two slots
+            break;
+          default:
+            throw new IOException("Unknown constant pool tag " + tag);
+        }
+      }
+
+      return new ConstantPool(utf8, classNameIndexes);
+    }
+  }
+}
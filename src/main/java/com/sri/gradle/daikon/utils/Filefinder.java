@@ -15,6 +15,7 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 public class Filefinder {
@@ -90,18 +91,46 @@ public class Filefinder {
     return findFiles(directory.toFile(), Dot.ANY, exclude);
   }
 
+  /**
+   * List all files with a given extension found in a directory, recording the modification time
+   * of every directory visited on the way. A listing stays current for as long as none of these
+   * directories changed, since adding, removing, or renaming a file changes its parent directory.
+   *
+   * @param directory directory to access
+   * @param extension one of "java", "class", "jar", "txt", or "*" for any file
+   * @param visitedDirectories receives each visited directory and its modification time
+   * @param exclude hints for files to be excluded in the directory.
+   * @return the list of matching files
+   */
+  public static List<File> findFiles(
+      Path directory, String extension, Map<Path, Long> visitedDirectories, String... exclude) {
+    if (!Files.exists(directory)) return ImmutableList.of();
+
+    return findFiles(directory.toFile(), Dot.of(extension), visitedDirectories, exclude);
+  }
+
+  private static List<File> findFiles(File directory, final Dot matcher, String... skipHints) {
+    return findFiles(directory, matcher, null, skipHints);
+  }
+
   /**
    * List all Java files found in a directory. Skip those ones matching the provide skip hints.
    *
    * @param directory directory to access
    * @param matcher file matching strategy
+   * @param visitedDirectories receives visited directories and their modification time; nullable
    * @param skipHints keywords used to avoid certain files collection
    * @return the list of files matching the given matcher
    */
-  private static List<File> findFiles(File directory, final Dot matcher, String... skipHints) {
+  private static List<File> findFiles(
+      File directory,
+      final Dot matcher,
+      Map<Path, Long> visitedDirectories,
+      String... skipHints) {
 
     try {
-      return ImmutableList.copyOf(walkDirectory(directory, matcher, skipHints));
+      return ImmutableList.copyOf(
+          walkDirectory(directory, matcher, visitedDirectories, skipHints));
     } catch (IOException e) {
       System.err.printf("Error: unable to crawl %s. See %s%n", directory.getName(), e);
     }
@@ -114,12 +143,17 @@ public class Filefinder {
    * will skip those files that contains certain keywords.
    *
    * @param location the directory location
+   * @param visitedDirectories receives visited directories and their modification time; nullable
    * @param keywords skip hints
    * @return a list of interesting files
    * @throws IOException unexpected error has occurred.
    */
   private static List<File> walkDirectory(
-      final File location, final Dot matcher, final String... keywords) throws IOException {
+      final File location,
+      final Dot matcher,
+      final Map<Path, Long> visitedDirectories,
+      final String... keywords)
+      throws IOException {
 
     final Path start = Paths.get(location.toURI());
 
@@ -130,6 +164,15 @@ public class Filefinder {
       Files.walkFileTree(
           start,
           new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+              if (visitedDirectories != null) {
+                visitedDirectories.put(dir, attrs.lastModifiedTime().toMillis());
+              }
+
+              return FileVisitResult.CONTINUE;
+            }
+
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
                 throws IOException {
@@ -189,5 +232,13 @@ public class Filefinder {
     String getExt() {
       return ext;
     }
+
+    static Dot of(String ext) {
+      for (Dot each : values()) {
+        if (each.getExt().equals(ext)) return each;
+      }
+
+      throw new IllegalArgumentException("Unknown extension " + ext);
+    }
   }
 }
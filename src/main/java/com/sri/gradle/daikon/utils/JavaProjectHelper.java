@@ -141,8 +141,32 @@ public class JavaProjectHelper {
     return outputDir.dir(testpath);
   }
 
+  public List<String> getTestClassNames(Directory testClassesDir) {
+    Objects.requireNonNull(testClassesDir);
+
+    final List<File> allTestClasses =
+        Filefinder.findJavaClasses(
+            testClassesDir.getAsFile().toPath(),
+            "$" /*exclude those that contain this symbol*/);
+    return MoreFiles.getTestClassNames(allTestClasses);
+  }
+
+  public static Optional<String> findTestDriverClass(List<String> classNames) {
+    Objects.requireNonNull(classNames);
+    // Let's assume there should be only one test driver.
+    return classNames
+        .stream()
+        .filter(Constants.EXPECTED_JUNIT4_NAME_REGEX.asPredicate())
+        .filter(f -> f.endsWith(Constants.TEST_DRIVER))
+        .findFirst();
+  }
+
   public Optional<String> findDriverClass(){
-    final List<File> javaDrivers = Filefinder.findJavaFiles(getDriverDir().toPath());
+    return findDriverClass(Filefinder.findJavaFiles(getDriverDir().toPath()));
+  }
+
+  public static Optional<String> findDriverClass(List<File> javaDrivers) {
+    Objects.requireNonNull(javaDrivers);
     return javaDrivers.stream()
         .map(f -> MoreFiles.getClassName(f.getAbsolutePath(), "driver", ".java"))
         .filter(Objects::nonNull)
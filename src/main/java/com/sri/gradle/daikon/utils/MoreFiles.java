@@ -9,7 +9,11 @@ import java.nio.file.Path;
 import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class MoreFiles {
   private MoreFiles() {
@@ -75,11 +79,38 @@ public class MoreFiles {
     Objects.requireNonNull(targetDir);
     Objects.requireNonNull(nameRegExp);
 
-    final List<File> allJavaFiles = Filefinder.findJavaFiles(targetDir);
+    return getMatchingJavaFiles(Filefinder.findJavaFiles(targetDir), nameRegExp);
+  }
+
+  public static Set<File> getMatchingJavaFiles(List<File> allJavaFiles, Pattern nameRegExp) {
+    Objects.requireNonNull(allJavaFiles);
+    Objects.requireNonNull(nameRegExp);
 
     return ImmutableStream.setCopyOf(
         allJavaFiles.stream()
             .filter(f -> Files.exists(f.toPath()))
             .filter(f -> nameRegExp.asPredicate().test(f.getName())));
   }
+
+  /**
+   * Packs a directory's files into a jar file, with paths relative to the directory.
+   *
+   * @param dir directory to pack
+   * @param jarFile the jar file to create
+   * @throws IOException if a file can't be read or the jar can't be written
+   */
+  public static void jar(Path dir, Path jarFile) throws IOException {
+    final List<Path> files;
+    try (Stream<Path> walk = Files.walk(dir)) {
+      files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+    }
+
+    try (JarOutputStream jar = new JarOutputStream(Files.newOutputStream(jarFile))) {
+      for (Path each : files) {
+        jar.putNextEntry(new JarEntry(dir.relativize(each).toString().replace(File.separatorChar, '/')));
+        Files.copy(each, jar);
+        jar.closeEntry();
+      }
+    }
+  }
 }
@@ -0,0 +1,32 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.gradle.api.GradleException;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Test;
+
+public class ChicoryAgentArgumentProviderTest {
+
+  @Test public void testRejectsSpaces() throws Exception {
+    final Project project = ProjectBuilder.builder().build();
+    final Path dir = Files.createTempDirectory("with space");
+    final ChicoryAgentArgumentProvider provider = new ChicoryAgentArgumentProvider(project);
+    provider.getPremainJar().set(Files.createFile(dir.resolve("ChicoryPremain.jar")).toFile());
+    provider.getComparabilityFile().set(Files.createFile(dir.resolve("Foo.decls-DynComp")).toFile());
+    provider.getTraceDir().set(dir.toFile());
+    provider.getSelectedClasses().set(ImmutableList.of("^com\\.foo\\b"));
+
+    try {
+      provider.asArguments();
+      fail("Chicory would split the premain jar's path");
+    } catch (GradleException e) {
+      assertTrue(e.getMessage().contains("--premain=" + dir.toAbsolutePath()));
+    }
+  }
+}
@@ -0,0 +1,20 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import org.junit.Test;
+
+public class ChicoryExecSpecTest {
+
+  @Test public void testJavaAgent() {
+    final File premainJar = new File("ChicoryPremain.jar");
+    final ChicoryExecSpec spec = new ChicoryExecSpec();
+    spec.setJavaAgent(premainJar, ImmutableList.of("--dtrace-file=Foo.dtrace.gz", "--ppt-select-pattern=^com\\.foo\\b"));
+    assertEquals(
+        ImmutableList.of("-javaagent:" + premainJar.getAbsolutePath() + "=--dtrace-file=Foo.dtrace.gz --ppt-select-pattern=^com\\.foo\\b"),
+        spec.getJvmArgs());
+    assertEquals(0, spec.getArgs().length);
+  }
+}
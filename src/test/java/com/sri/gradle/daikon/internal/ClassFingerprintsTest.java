@@ -0,0 +1,81 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+public class ClassFingerprintsTest {
+
+  @Test public void testFingerprintFollowsReferences() throws Exception {
+    final Path classesDir = Files.createTempDirectory("classes");
+    copyClass(Caller.class, Caller.class, classesDir);
+    copyClass(Callee.class, Callee.class, classesDir);
+    copyClass(Leaf.class, Leaf.class, classesDir);
+    copyClass(Unrelated.class, Unrelated.class, classesDir);
+
+    final ClassFingerprints before = new ClassFingerprints(ImmutableList.of(classesDir.toFile()));
+    final String callerBefore = before.fingerprint(Caller.class.getName());
+    final String callerClassBefore = before.classFingerprint(Caller.class.getName());
+    assertNotNull(callerBefore);
+    assertNull(before.fingerprint("com.foo.Missing"));
+
+    // Leaf is only reached through Callee
+    copyClass(Unrelated.class, Leaf.class, classesDir);
+    final ClassFingerprints after = new ClassFingerprints(ImmutableList.of(classesDir.toFile()));
+    assertNotEquals(callerBefore, after.fingerprint(Caller.class.getName()));
+    assertEquals(callerClassBefore, after.classFingerprint(Caller.class.getName()));
+    assertEquals(
+        before.fingerprint(Unrelated.class.getName()),
+        after.fingerprint(Unrelated.class.getName()));
+  }
+
+  @Test public void testFingerprintIgnoresUnreferencedClasses() throws Exception {
+    final Path classesDir = Files.createTempDirectory("classes");
+    copyClass(Callee.class, Callee.class, classesDir);
+    copyClass(Leaf.class, Leaf.class, classesDir);
+    final String before =
+        new ClassFingerprints(ImmutableList.of(classesDir.toFile())).fingerprint(Leaf.class.getName());
+
+    copyClass(Unrelated.class, Unrelated.class, classesDir);
+    assertEquals(
+        before,
+        new ClassFingerprints(ImmutableList.of(classesDir.toFile())).fingerprint(Leaf.class.getName()));
+  }
+
+  // Writes the class file of `from` where the class file of `as` belongs
+  private static void copyClass(Class<?> from, Class<?> as, Path classesDir) throws Exception {
+    final byte[] bytes;
+    final String fileName = from.getName().substring(from.getName().lastIndexOf('.') + 1) + ".class";
+    try (InputStream in = from.getResourceAsStream(fileName)) {
+      bytes = ByteStreams.toByteArray(in);
+    }
+
+    final Path classFile = classesDir.resolve(as.getName().replace('.', '/') + ".class");
+    Files.createDirectories(classFile.getParent());
+    Files.write(classFile, bytes);
+  }
+
+  static class Caller {
+    Callee callee;
+  }
+
+  static class Callee {
+    Leaf leaf;
+  }
+
+  static class Leaf {
+    int value;
+  }
+
+  static class Unrelated {
+    long value;
+  }
+}
@@ -0,0 +1,25 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.utils.ClassFiles;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.Test;
+
+public class ClassIndexTest {
+
+  @Test public void testJUnit3TestClasses() {
+    final Map<String, ClassFiles.Summary> classes = new HashMap<>();
+    // No annotations; test methods are found by name
+    classes.put("com.foo.FooTest", new ClassFiles.Summary("com.foo.FooTest", "junit.framework.TestCase", 0x0001, false, false));
+    classes.put("com.foo.AbstractBarTest", new ClassFiles.Summary("com.foo.AbstractBarTest", "junit.framework.TestCase", 0x0401, false, false));
+    classes.put("com.foo.BarTest", new ClassFiles.Summary("com.foo.BarTest", "com.foo.AbstractBarTest", 0x0001, false, false));
+    classes.put("com.foo.Baz", new ClassFiles.Summary("com.foo.Baz", "com.foo.Qux", 0x0001, false, false));
+    // Package-private; the driver in another package can't refer to it
+    classes.put("com.foo.HiddenTest", new ClassFiles.Summary("com.foo.HiddenTest", null, 0x0000, false, true));
+    assertEquals(ImmutableList.of("com.foo.BarTest", "com.foo.FooTest"), ClassIndex.testClasses(new TreeMap<>(classes)));
+  }
+}
@@ -0,0 +1,83 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Test;
+
+public class ComparabilityCacheTest {
+
+  @Test public void testKeys() throws Exception {
+    final Path classesDir = Files.createTempDirectory("classes");
+    copyClass(Driver.class, classesDir);
+    copyClass(Subject.class, classesDir);
+    final Path cacheDir = Files.createTempDirectory("dcomp-cache");
+
+    final String key = cache(cacheDir, classesDir, ImmutableList.of()).key(Subject.class.getName());
+    assertNotNull(key);
+    assertEquals(key, cache(cacheDir, classesDir, ImmutableList.of()).key(Subject.class.getName()));
+    assertNull(cache(cacheDir, classesDir, ImmutableList.of()).key("com.foo.Missing"));
+    // DynComp's options change its results
+    assertNotEquals(
+        key,
+        cache(cacheDir, classesDir, ImmutableList.of("--ppt-omit-pattern=^com\\.foo\\."))
+            .key(Subject.class.getName()));
+  }
+
+  @Test public void testStoreAndLoad() throws Exception {
+    final Path classesDir = Files.createTempDirectory("classes");
+    copyClass(Driver.class, classesDir);
+    copyClass(Subject.class, classesDir);
+    final Path cacheDir = Files.createTempDirectory("dcomp-cache").resolve("nested");
+
+    final ComparabilityCache cache = cache(cacheDir, classesDir, ImmutableList.of());
+    final String key = cache.key(Subject.class.getName());
+    assertNull(cache.load(key));
+    assertNull(cache.loadHeader(key));
+
+    // A class without program points has an empty fragment, which is still a hit
+    cache.store(key, "");
+    cache.storeHeader(key, DeclsFile.DEFAULT_HEADER);
+    assertEquals("", cache.load(key));
+    assertEquals(DeclsFile.DEFAULT_HEADER, cache.loadHeader(key));
+
+    final String fragment = "ppt com.foo.Foo:::OBJECT\nppt-type object\n";
+    cache.store(key, fragment);
+    assertEquals(fragment, cache(cacheDir, classesDir, ImmutableList.of()).load(key));
+  }
+
+  private static ComparabilityCache cache(Path cacheDir, Path classesDir, List<String> toolOptions) {
+    final List<File> classesDirs = ImmutableList.of(classesDir.toFile());
+    return new ComparabilityCache(
+        cacheDir, classesDirs, classesDirs, toolOptions, Driver.class.getName());
+  }
+
+  private static void copyClass(Class<?> type, Path classesDir) throws Exception {
+    final byte[] bytes;
+    final String fileName = type.getName().substring(type.getName().lastIndexOf('.') + 1) + ".class";
+    try (InputStream in = type.getResourceAsStream(fileName)) {
+      bytes = ByteStreams.toByteArray(in);
+    }
+
+    final Path classFile = classesDir.resolve(type.getName().replace('.', '/') + ".class");
+    Files.createDirectories(classFile.getParent());
+    Files.write(classFile, bytes);
+  }
+
+  static class Driver {
+    Subject subject;
+  }
+
+  static class Subject {
+    int value;
+  }
+}
@@ -0,0 +1,70 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+public class DeclsFileTest {
+
+  @Test public void testClassName() {
+    assertEquals("com.foo.Bar", DeclsFile.className("com.foo.Bar.baz(int,\\_java.lang.String):::ENTER"));
+    assertEquals("com.foo.Bar", DeclsFile.className("com.foo.Bar:::OBJECT"));
+    assertEquals("com.foo.Bar$1", DeclsFile.className("com.foo.Bar$1.run():::EXIT12"));
+  }
+
+  @Test public void testRoundTripShiftsComparabilities() throws Exception {
+    final String foo =
+        "ppt com.foo.Foo.bar(int):::ENTER\n"
+            + "ppt-type enter\n"
+            + "variable x\n"
+            + "  var-kind variable\n"
+            + "  comparability 2\n"
+            + "variable this\n"
+            + "  var-kind variable\n"
+            + "  comparability -1\n"
+            + "\n"
+            + "ppt com.foo.Foo:::OBJECT\n"
+            + "ppt-type object\n"
+            + "variable this.y\n"
+            + "  var-kind field y\n"
+            + "  comparability 1\n";
+    // From another DynComp run, whose ids start over
+    final String baz =
+        "ppt com.foo.Baz:::OBJECT\n"
+            + "ppt-type object\n"
+            + "variable this.z\n"
+            + "  var-kind field z\n"
+            + "  comparability 1\n"
+            + "variable this.w\n"
+            + "  var-kind field w\n"
+            + "  comparability -1\n";
+
+    final Path declsFile = Files.createTempFile("merged", ".decls");
+    DeclsFile.write(DeclsFile.DEFAULT_HEADER, ImmutableList.of(foo, baz), declsFile);
+    final DeclsFile read = DeclsFile.read(declsFile);
+
+    assertEquals(DeclsFile.DEFAULT_HEADER, read.getHeader());
+    // The first fragment keeps its ids; the second's are shifted by the first's largest, 2, plus 1
+    assertEquals(
+        ImmutableMap.of("com.foo.Foo", foo, "com.foo.Baz", baz.replace("comparability 1", "comparability 4")),
+        read.getFragments());
+    assertEquals(ImmutableList.of("com.foo.Foo", "com.foo.Baz"), ImmutableList.copyOf(read.getFragments().keySet()));
+  }
+
+  @Test public void testWriteSkipsEmptyFragments() throws Exception {
+    final String foo =
+        "ppt com.foo.Foo:::OBJECT\n"
+            + "ppt-type object\n"
+            + "variable this.y\n"
+            + "  var-kind field y\n"
+            + "  comparability 1\n";
+
+    final Path declsFile = Files.createTempFile("merged", ".decls");
+    DeclsFile.write(DeclsFile.DEFAULT_HEADER, ImmutableList.of("", foo), declsFile);
+    assertEquals(ImmutableMap.of("com.foo.Foo", foo), DeclsFile.read(declsFile).getFragments());
+  }
+}
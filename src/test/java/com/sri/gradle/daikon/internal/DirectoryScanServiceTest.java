@@ -0,0 +1,94 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.gradle.api.services.BuildServiceParameters;
+import org.junit.Test;
+
+public class DirectoryScanServiceTest {
+  // Well past any file system's timestamp tick, and not on a whole second
+  private static final long SETTLED_MILLIS = 60_000 + 123;
+
+  @Test public void testListingIsReusedUntilDirectoryChanges() throws Exception {
+    final DirectoryScanService scans = newService();
+    final Path dir = Files.createTempDirectory("scan");
+    Files.createFile(dir.resolve("a.txt"));
+    final long settled = settle(dir, System.currentTimeMillis() - SETTLED_MILLIS);
+    assertEquals(ImmutableList.of("a.txt"), names(scans.findTextFiles(dir)));
+
+    // Same modification time, so the earlier walk is still trusted
+    Files.createFile(dir.resolve("b.txt"));
+    settle(dir, settled);
+    assertEquals(ImmutableList.of("a.txt"), names(scans.findTextFiles(dir)));
+
+    settle(dir, settled + 1000);
+    assertEquals(ImmutableList.of("a.txt", "b.txt"), names(scans.findTextFiles(dir)));
+  }
+
+  @Test public void testNestedDirectoryChangeRefreshesListing() throws Exception {
+    final DirectoryScanService scans = newService();
+    final Path dir = Files.createTempDirectory("scan");
+    final Path nested = Files.createDirectories(dir.resolve("com/foo"));
+    Files.createFile(nested.resolve("a.txt"));
+    final long settled = System.currentTimeMillis() - SETTLED_MILLIS;
+    settle(nested, settled);
+    settle(dir.resolve("com"), settled);
+    settle(dir, settled);
+    assertEquals(ImmutableList.of("a.txt"), names(scans.findTextFiles(dir)));
+
+    Files.createFile(nested.resolve("b.txt"));
+    settle(nested, settled + 1000);
+    assertEquals(ImmutableList.of("a.txt", "b.txt"), names(scans.findTextFiles(dir)));
+  }
+
+  @Test public void testRacyListingIsNotReused() throws Exception {
+    final DirectoryScanService scans = newService();
+    final Path dir = Files.createTempDirectory("scan");
+    Files.createFile(dir.resolve("a.txt"));
+    // Changed within the walk's tick; a later change could keep the same time
+    final long racy = settle(dir, System.currentTimeMillis() + 10_000);
+    assertEquals(ImmutableList.of("a.txt"), names(scans.findTextFiles(dir)));
+
+    Files.createFile(dir.resolve("b.txt"));
+    settle(dir, racy);
+    assertEquals(ImmutableList.of("a.txt", "b.txt"), names(scans.findTextFiles(dir)));
+  }
+
+  @Test public void testWholeSecondTimesAreCoarse() throws Exception {
+    final DirectoryScanService scans = newService();
+    final Path dir = Files.createTempDirectory("scan");
+    Files.createFile(dir.resolve("a.txt"));
+    // A second ago, but on a file system that may only keep every other second
+    final long coarse = settle(dir, (System.currentTimeMillis() / 1000 - 1) * 1000);
+    assertEquals(ImmutableList.of("a.txt"), names(scans.findTextFiles(dir)));
+
+    Files.createFile(dir.resolve("b.txt"));
+    settle(dir, coarse);
+    assertEquals(ImmutableList.of("a.txt", "b.txt"), names(scans.findTextFiles(dir)));
+  }
+
+  private static DirectoryScanService newService() {
+    return new DirectoryScanService() {
+      @Override
+      public BuildServiceParameters.None getParameters() {
+        return null;
+      }
+    };
+  }
+
+  // Sets a directory's modification time, as far as the file system keeps it
+  private static long settle(Path dir, long modified) {
+    final File file = dir.toFile();
+    file.setLastModified(modified);
+    return file.lastModified();
+  }
+
+  private static List<String> names(List<File> files) {
+    return files.stream().map(File::getName).sorted().collect(ImmutableList.toImmutableList());
+  }
+}
@@ -0,0 +1,21 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+public class ExecutionProfileTest {
+
+  @Test public void testProfiles() {
+    assertFalse(ExecutionProfile.runsDynComp(ExecutionProfile.PREVIEW));
+    assertTrue(ExecutionProfile.runsDynComp(ExecutionProfile.STANDARD));
+    assertEquals(ImmutableList.of("--sample-start=100"), ExecutionProfile.chicoryOptions(ExecutionProfile.PREVIEW));
+    assertEquals(ImmutableList.of(), ExecutionProfile.daikonOptions(ExecutionProfile.STANDARD));
+    assertEquals(
+        ExecutionProfile.dynCompOptions(ExecutionProfile.THOROUGH),
+        ExecutionProfile.chicoryOptions(ExecutionProfile.THOROUGH));
+  }
+}
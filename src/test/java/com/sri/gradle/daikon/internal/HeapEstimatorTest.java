@@ -0,0 +1,44 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.Test;
+
+public class HeapEstimatorTest {
+
+  @Test public void testEstimate() {
+    final long mb = 1L << 20;
+    final long limit = 16384 * mb;
+    // No history: a base heap plus the input and program points
+    assertEquals(
+        "1536m", HeapEstimator.toHeapSize(HeapEstimator.estimate(0, 1024, HeapHistory.NONE, limit)));
+    // Twice the input of the last run, which peaked at 1g
+    final HeapHistory history = new HeapHistory(100 * mb, 10, 1024 * mb);
+    assertEquals(
+        "3072m", HeapEstimator.toHeapSize(HeapEstimator.estimate(200 * mb, 10, history, limit)));
+    // Never more than three quarters of the memory limit
+    assertEquals(
+        "12288m", HeapEstimator.toHeapSize(HeapEstimator.estimate(100_000 * mb, 10, history, limit)));
+  }
+
+  @Test public void testCountProgramPoints() throws Exception {
+    final String splitter =
+        "===========================================================================";
+    final Path invariants = Files.createTempFile("invariants", ".inv.txt");
+    Files.write(
+        invariants,
+        ImmutableList.of(
+            splitter,
+            "com.foo.Foo:::OBJECT",
+            "this.bar != null",
+            splitter,
+            "com.foo.Foo.mutate():::EXIT",
+            splitter,
+            "Exiting Daikon."));
+    assertEquals(2, HeapEstimator.countProgramPoints(invariants));
+    assertEquals(0, HeapEstimator.countProgramPoints(invariants.resolveSibling("missing.inv.txt")));
+  }
+}
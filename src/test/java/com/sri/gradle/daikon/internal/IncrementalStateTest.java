@@ -0,0 +1,109 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.Test;
+
+public class IncrementalStateTest {
+  private static final String FOO_TEST = FooTest.class.getName();
+  private static final String BAR_TEST = BarTest.class.getName();
+  private static final List<String> TEST_CLASSES = ImmutableList.of(FOO_TEST, BAR_TEST);
+
+  @Test public void testChangedClasses() throws Exception {
+    final Path classesDir = Files.createTempDirectory("classes");
+    final Path stateDir = Files.createTempDirectory("incremental").resolve("state");
+    copyClass(FooTest.class, FooTest.class, classesDir);
+    copyClass(Foo.class, Foo.class, classesDir);
+    copyClass(BarTest.class, BarTest.class, classesDir);
+
+    // Nothing inferred yet
+    assertEquals(TEST_CLASSES, state(stateDir, classesDir).changedClasses(TEST_CLASSES));
+    infer(state(stateDir, classesDir), TEST_CLASSES);
+    assertEquals(ImmutableList.of(), state(stateDir, classesDir).changedClasses(TEST_CLASSES));
+
+    // A class the test reaches
+    copyClass(Replacement.class, Foo.class, classesDir);
+    assertEquals(ImmutableList.of(FOO_TEST), state(stateDir, classesDir).changedClasses(TEST_CLASSES));
+    infer(state(stateDir, classesDir), TEST_CLASSES);
+
+    // The test class itself
+    copyClass(Replacement.class, BarTest.class, classesDir);
+    assertEquals(ImmutableList.of(BAR_TEST), state(stateDir, classesDir).changedClasses(TEST_CLASSES));
+    infer(state(stateDir, classesDir), TEST_CLASSES);
+
+    final IncrementalState state = state(stateDir, classesDir);
+    Files.delete(state.invariantsFile(FOO_TEST));
+    assertEquals(ImmutableList.of(FOO_TEST), state.changedClasses(TEST_CLASSES));
+  }
+
+  @Test public void testSaveForgetsRemovedClasses() throws Exception {
+    final Path classesDir = Files.createTempDirectory("classes");
+    final Path stateDir = Files.createTempDirectory("incremental");
+    copyClass(FooTest.class, FooTest.class, classesDir);
+    copyClass(Foo.class, Foo.class, classesDir);
+    copyClass(BarTest.class, BarTest.class, classesDir);
+    infer(state(stateDir, classesDir), TEST_CLASSES);
+
+    Files.delete(classesDir.resolve(BAR_TEST.replace('.', '/') + ".class"));
+    final IncrementalState state = state(stateDir, classesDir);
+    assertEquals(ImmutableList.of(BAR_TEST), state.changedClasses(TEST_CLASSES));
+    state.save(ImmutableList.of(FOO_TEST));
+
+    assertTrue(Files.exists(state.invariantsFile(FOO_TEST)));
+    assertFalse(Files.exists(state.invariantsFile(BAR_TEST)));
+    assertEquals(
+        ImmutableList.of(),
+        state(stateDir, classesDir).changedClasses(ImmutableList.of(FOO_TEST)));
+  }
+
+  private static IncrementalState state(Path stateDir, Path classesDir) {
+    // ClassFingerprints reads each class once, so every check needs a new one
+    return new IncrementalState(stateDir, ImmutableList.of(classesDir.toFile()));
+  }
+
+  // What InferInvariants does for the changed classes
+  private static void infer(IncrementalState state, List<String> classes) throws Exception {
+    for (String each : state.changedClasses(classes)) {
+      Files.createDirectories(state.invariantsFile(each).getParent());
+      Files.write(state.invariantsFile(each), ImmutableList.of(each + ":::OBJECT"));
+    }
+    state.save(classes);
+  }
+
+  // Writes the class file of `from` where the class file of `as` belongs
+  private static void copyClass(Class<?> from, Class<?> as, Path classesDir) throws Exception {
+    final byte[] bytes;
+    final String fileName = from.getName().substring(from.getName().lastIndexOf('.') + 1) + ".class";
+    try (InputStream in = from.getResourceAsStream(fileName)) {
+      bytes = ByteStreams.toByteArray(in);
+    }
+
+    final Path classFile = classesDir.resolve(as.getName().replace('.', '/') + ".class");
+    Files.createDirectories(classFile.getParent());
+    Files.write(classFile, bytes);
+  }
+
+  static class FooTest {
+    Foo foo;
+  }
+
+  static class Foo {
+    int value;
+  }
+
+  static class BarTest {
+    long value;
+  }
+
+  static class Replacement {
+    String value;
+  }
+}
@@ -0,0 +1,31 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import org.junit.Test;
+
+public class LaunchFilesTest {
+
+  @Test public void testPathingJar() throws Exception {
+    final Path dir = Files.createTempDirectory("launch");
+    final File classes = Files.createDirectory(dir.resolve("classes")).toFile();
+    final List<File> classpath =
+        LaunchFiles.dedupe(ImmutableList.of(classes, new File(dir.toFile(), "classes/../classes"), new File(dir.toFile(), "missing")));
+    assertEquals(ImmutableList.of(classes.getAbsoluteFile()), classpath);
+
+    final File jar = LaunchFiles.pathingJar(classpath, dir);
+    assertEquals(jar, LaunchFiles.pathingJar(classpath, dir));
+    try (JarFile jarFile = new JarFile(jar)) {
+      assertEquals(
+          classes.toURI().toString(),
+          jarFile.getManifest().getMainAttributes().getValue(Attributes.Name.CLASS_PATH));
+    }
+  }
+}
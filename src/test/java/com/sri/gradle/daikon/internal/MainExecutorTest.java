@@ -0,0 +1,78 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.Constants;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.gradle.api.Project;
+import org.gradle.testfixtures.ProjectBuilder;
+import org.junit.Test;
+
+public class MainExecutorTest {
+
+  @Test public void testPreviewProfileSkipsComparability() {
+    final String profile = ExecutionProfile.PREVIEW;
+    assertFalse(ExecutionProfile.runsDynComp(profile));
+
+    final Project project = ProjectBuilder.builder().build();
+    final ChicoryExecSpec spec = new ChicoryExecSpec();
+    new MainExecutor.ChicoryExecSpecAction(
+            project,
+            ImmutableList.of(),
+            ImmutableList.of("^com\\.foo\\b"),
+            "com.foo.FooTestDriver",
+            "FooTestDriver",
+            false,
+            ImmutableList.of(),
+            ExecutionProfile.chicoryOptions(profile),
+            ExecutionProfile.runsDynComp(profile),
+            null,
+            project.getProjectDir().toPath())
+        .execute(spec);
+
+    final List<String> args =
+        Arrays.stream(spec.getArgs()).map(String::valueOf).collect(Collectors.toList());
+    assertTrue(args.contains("--sample-start=" + ExecutionProfile.PREVIEW_SAMPLE_START));
+    assertTrue(args.stream().noneMatch(each -> each.startsWith("--comparability-file")));
+    assertEquals("com.foo.FooTestDriver", args.get(args.size() - 1));
+  }
+
+  @Test public void testArchivedJarLeadsClasspath() throws Exception {
+    final Path dir = Files.createTempDirectory("cds");
+    final File sharedArchive = Files.createFile(dir.resolve(Constants.CDS_ARCHIVE_FILE)).toFile();
+    final File archivedJar =
+        Files.createFile(Files.createDirectory(dir.resolve("archive")).resolve(Constants.DAIKON_JAR_FILE)).toFile();
+    final File classes = dir.resolve("classes").toFile();
+    final File daikonJar = dir.resolve(Constants.DAIKON_JAR_FILE).toFile();
+    final File junitJar = dir.resolve("junit.jar").toFile();
+
+    final List<File> classpath = new ArrayList<>(ImmutableList.of(classes, daikonJar, junitJar));
+    assertTrue(MainExecutor.useArchivedJar(classpath, sharedArchive, archivedJar));
+    assertEquals(ImmutableList.of(archivedJar, classes, junitJar), classpath);
+  }
+
+  @Test public void testArchivedJarNeedsArchiveAndDaikonJar() throws Exception {
+    final Path dir = Files.createTempDirectory("cds");
+    final File archivedJar = Files.createFile(dir.resolve(Constants.DAIKON_JAR_FILE)).toFile();
+    final File missingArchive = dir.resolve(Constants.CDS_ARCHIVE_FILE).toFile();
+
+    final List<File> withDaikon = new ArrayList<>(ImmutableList.of(dir.resolve("lib/daikon.jar").toFile()));
+    assertFalse(MainExecutor.useArchivedJar(withDaikon, null, archivedJar));
+    assertFalse(MainExecutor.useArchivedJar(withDaikon, missingArchive, archivedJar));
+    assertEquals(1, withDaikon.size());
+
+    final File sharedArchive = Files.createFile(missingArchive.toPath()).toFile();
+    final List<File> withoutDaikon = new ArrayList<>(ImmutableList.of(dir.resolve("classes").toFile()));
+    assertFalse(MainExecutor.useArchivedJar(withoutDaikon, sharedArchive, archivedJar));
+    assertEquals(ImmutableList.of(dir.resolve("classes").toFile()), withoutDaikon);
+  }
+}
@@ -0,0 +1,14 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class MemoryBudgetServiceTest {
+
+  @Test public void testParseHeapSize() {
+    assertEquals(512L * 1024 * 1024, MemoryBudgetService.parseHeapSize("512m"));
+    assertEquals(4L * 1024 * 1024 * 1024, MemoryBudgetService.parseHeapSize("4G"));
+    assertEquals(2048L, MemoryBudgetService.parseHeapSize("2048"));
+  }
+}
@@ -0,0 +1,23 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.junit.Test;
+
+public class ProgramPointPartitionerTest {
+
+  @Test public void testPartition() {
+    final List<String> classes = ImmutableList.of("com.foo.A", "com.foo.B", "com.bar.C", "com.baz.D");
+
+    final List<List<String>> byClass = ProgramPointPartitioner.partition(classes, 2, ProgramPointPartitioner.BY_CLASS);
+    assertEquals(2, byClass.size());
+    assertEquals(2, byClass.get(0).size());
+    assertEquals(2, byClass.get(1).size());
+
+    final List<List<String>> byPackage = ProgramPointPartitioner.partition(classes, 5, ProgramPointPartitioner.BY_PACKAGE);
+    assertEquals(3, byPackage.size());
+    assertEquals(ImmutableList.of("com.foo.A", "com.foo.B"), byPackage.get(0));
+  }
+}
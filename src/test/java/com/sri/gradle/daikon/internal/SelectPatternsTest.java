@@ -0,0 +1,21 @@
+package com.sri.gradle.daikon.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+import org.junit.Test;
+
+public class SelectPatternsTest {
+
+  @Test public void testSelectAndOmit() {
+    final List<String> mainClasses = ImmutableList.of("com.foo.Bar", "com.foo.bar.Baz", "com.foo.Bar$1", "org.x.Y");
+    final List<String> select = SelectPatterns.select(ImmutableList.of(), mainClasses);
+    assertEquals(ImmutableList.of("^(?:com\\.foo|org\\.x)\\b"), select);
+
+    final List<String> omit = SelectPatterns.omit(ImmutableList.of("com.foo.bar"));
+    assertEquals(
+        ImmutableList.of("com.foo.Bar"),
+        SelectPatterns.filter(ImmutableList.of("com.foo.Bar", "com.foo.bar.Baz", "com.foobar.Q"), select, omit));
+  }
+}
@@ -0,0 +1,56 @@
+package com.sri.gradle.daikon.tasks;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.Constants;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.Test;
+
+public class BuildCdsArchiveTest {
+
+  @Test public void testJdk11ClassList() throws Exception {
+    final Path classList =
+        write(
+            "java/lang/Object",
+            "java/lang/String",
+            "daikon/Daikon",
+            "daikon/FileIO$ParseState");
+    assertEquals(
+        ImmutableList.of(
+            "java/lang/Object", "java/lang/String", "daikon/Daikon", "daikon/FileIO$ParseState"),
+        BuildCdsArchive.readClassList(classList));
+  }
+
+  @Test public void testJdk17ClassList() throws Exception {
+    final Path classList =
+        write(
+            "# NOTE: Do not modify this file.",
+            "#",
+            "# This file is generated via the -XX:DumpLoadedClassList=<class_list_file> option",
+            "java/lang/Object id: 0",
+            "java/lang/String id: 1",
+            "daikon/Daikon id: 512",
+            "@lambda-proxy daikon/Daikon 7 8 9 10",
+            "@lambda-form-invoker [LF_RESOLVE] java.lang.invoke.DirectMethodHandle$Holder invokeStatic L_L",
+            "",
+            "daikon/FileIO$ParseState id: 513");
+    assertEquals(
+        ImmutableList.of(
+            "java/lang/Object", "java/lang/String", "daikon/Daikon", "daikon/FileIO$ParseState"),
+        BuildCdsArchive.readClassList(classList));
+  }
+
+  @Test public void testMissingClassList() throws Exception {
+    final Path classList = Files.createTempDirectory("classlist").resolve("missing.classlist");
+    assertEquals(ImmutableList.of(), BuildCdsArchive.readClassList(classList));
+  }
+
+  private static Path write(String... lines) throws Exception {
+    final Path classList = Files.createTempFile("daikon", ".classlist");
+    Files.write(classList, Arrays.asList(lines), Constants.ENCODING);
+    return classList;
+  }
+}
@@ -0,0 +1,54 @@
+package com.sri.gradle.daikon.tasks;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+
+import com.sri.gradle.daikon.Constants;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+
+public class DaikonEvidenceTest {
+  private static final String SPLITTER =
+      "===========================================================================";
+
+  @Test public void testInvariantsFileCounts() throws Exception {
+    final List<String> lines = Arrays.asList(
+        SPLITTER,
+        "com.foo.Foo:::OBJECT",
+        SPLITTER,
+        "com.foo.Foo.mutate():::EXIT",
+        SPLITTER,
+        "com.foo.FooManager.initialize():::ENTER",
+        "this.foo != null",
+        SPLITTER,
+        "com.foo.FooManager.initialize():::EXIT",
+        "this.foo == orig(this.foo)",
+        "this.foo != null",
+        SPLITTER,
+        "com.foo.FooStuffTest.testMutate():::ENTER",
+        "com.foo.FooStuffTest.count == 1",
+        SPLITTER,
+        "com.foo.FooStuffTest.testMutate():::EXIT",
+        SPLITTER);
+
+    final Path invsFile = Files.createTempFile("Driver", ".inv.txt");
+    try {
+      Files.write(invsFile, lines, Constants.ENCODING);
+
+      final DaikonEvidence.ReadWriteDaikonDetails details =
+          new DaikonEvidence.ReadWriteDaikonDetails(invsFile, null, "com.foo");
+      final Map<String, String> metrics = details.processLineByLine();
+
+      assertThat(metrics.get("TESTS_COUNT"), is("1"));
+      assertThat(metrics.get("CLASSES_COUNT"), is("2"));
+      assertThat(metrics.get("INVARIANT_COUNT"), is("3"));
+      assertThat(metrics.get("PP_COUNT"), is("3"));
+    } finally {
+      Files.deleteIfExists(invsFile);
+    }
+  }
+}
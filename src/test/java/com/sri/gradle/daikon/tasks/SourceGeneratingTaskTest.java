@@ -0,0 +1,124 @@
+package com.sri.gradle.daikon.tasks;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.sri.gradle.daikon.Constants;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import org.junit.Test;
+
+public class SourceGeneratingTaskTest {
+  private static final String DRIVER_PACKAGE = "com.sri.gradle.daikon.driver";
+
+  // Run by the generated driver
+  public static class TrivialTest {
+    @Test public void testNothing() {
+    }
+  }
+
+  @Test public void testTestDriverCodeWithoutClasses() throws Exception {
+    final String source = compileTestDriverCode(0);
+    assertEquals(0, countChunks(source));
+  }
+
+  @Test public void testTestDriverCodeWithFullChunk() throws Exception {
+    final String source = compileTestDriverCode(SourceGeneratingTask.CLASSES_PER_CHUNK);
+    assertEquals(1, countChunks(source));
+  }
+
+  @Test public void testTestDriverCodeWithOneMoreClass() throws Exception {
+    final String source = compileTestDriverCode(SourceGeneratingTask.CLASSES_PER_CHUNK + 1);
+    assertEquals(2, countChunks(source));
+    assertTrue(source.contains("Collections.addAll(classes, Classes1.CLASSES);"));
+  }
+
+  @Test public void testTestDriverCodeWithNestedClass() throws Exception {
+    final StringWriter out = new StringWriter();
+    SourceGeneratingTask.writeTestDriverCode(
+        DRIVER_PACKAGE, ImmutableList.of("com.foo.Outer$Inner"), out);
+    assertTrue(out.toString().contains("com.foo.Outer.Inner.class,"));
+    // TrivialTest's binary name has a '$' too; the source must compile
+    compileTestDriverCode(1);
+  }
+
+  /** Writes a driver running TrivialTest the given number of times, and compiles it. */
+  private static String compileTestDriverCode(int classCount) throws Exception {
+    final List<String> testClassNames =
+        Collections.nCopies(classCount, TrivialTest.class.getName());
+    final Path sourceDir = Files.createTempDirectory("driver-sources");
+    final Path source = sourceDir.resolve(Constants.TEST_DRIVER_CLASSNAME + ".java");
+    try (Writer out = Files.newBufferedWriter(source, Constants.ENCODING)) {
+      SourceGeneratingTask.writeTestDriverCode(DRIVER_PACKAGE, testClassNames, out);
+    }
+
+    final JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    final int exitCode =
+        javac.run(
+            null,
+            null,
+            null,
+            "-classpath",
+            System.getProperty("java.class.path"),
+            "-d",
+            Files.createTempDirectory("driver-classes").toString(),
+            source.toString());
+    assertEquals(0, exitCode);
+    return new String(Files.readAllBytes(source), Constants.ENCODING);
+  }
+
+  private static int countChunks(String source) {
+    return source.split("private static final class Classes", -1).length - 1;
+  }
+
+  @Test public void testGeneratedTestDriverClass() throws Exception {
+    final Path classesDir = Files.createTempDirectory("driver-classes");
+    final Path packageDir = Files.createDirectories(classesDir.resolve(DRIVER_PACKAGE.replace('.', '/')));
+    Files.write(
+        packageDir.resolve(Constants.TEST_DRIVER_CLASSNAME + ".class"),
+        SourceGeneratingTask.generateTestDriverClass(DRIVER_PACKAGE));
+    Files.write(
+        packageDir.resolve(Constants.TEST_DRIVER_CLASSNAME + SourceGeneratingTask.TEST_CLASSES_RESOURCE_EXT),
+        ImmutableList.of(TrivialTest.class.getName()),
+        Constants.ENCODING);
+
+    final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    final PrintStream systemOut = System.out;
+    try (URLClassLoader loader =
+        new URLClassLoader(new URL[] {classesDir.toUri().toURL()}, getClass().getClassLoader()) {
+          @Override
+          public URL getResource(String name) {
+            // Keeps the driver from writing a test profile to the working directory
+            return name.equals(Constants.TEST_PROFILE_LISTENER.replace('.', '/') + ".class")
+                ? null
+                : super.getResource(name);
+          }
+        }) {
+      // Defining the class checks its max_stack and max_locals, running it its branch offsets
+      final Method main =
+          loader
+              .loadClass(DRIVER_PACKAGE + "." + Constants.TEST_DRIVER_CLASSNAME)
+              .getMethod("main", String[].class);
+      System.setOut(new PrintStream(stdout, true, "UTF-8"));
+      main.invoke(null, (Object) new String[0]);
+    } finally {
+      System.setOut(systemOut);
+    }
+
+    assertThat(stdout.toString("UTF-8").trim(), is("Test ran: 1, Failed: 0"));
+  }
+}
@@ -0,0 +1,27 @@
+package com.sri.gradle.daikon.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class ClassFileWriterTest {
+
+  @Test public void testMainClass() throws Exception {
+    final ClassFileWriter writer = new ClassFileWriter("com/foo/Driver", ClassFileWriter.ACC_PUBLIC);
+    writer.addMethod(
+        ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_STATIC,
+        "main",
+        "([Ljava/lang/String;)V",
+        0,
+        1,
+        new byte[] {(byte) 0xb1 /* return */});
+
+    final ClassFiles.Summary summary = ClassFiles.summarize(writer.toByteArray());
+    assertEquals("com.foo.Driver", summary.getName());
+    assertEquals("java.lang.Object", summary.getSuperName());
+    assertTrue(summary.hasMain());
+    assertFalse(summary.hasTests());
+  }
+}
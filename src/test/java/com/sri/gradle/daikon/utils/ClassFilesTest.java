@@ -0,0 +1,26 @@
+package com.sri.gradle.daikon.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.io.ByteStreams;
+import java.io.InputStream;
+import org.junit.Test;
+
+public class ClassFilesTest {
+
+  @Test public void testSummarize() throws Exception {
+    final byte[] bytes;
+    try (InputStream in = ClassFilesTest.class.getResourceAsStream("ClassFilesTest.class")) {
+      bytes = ByteStreams.toByteArray(in);
+    }
+
+    final ClassFiles.Summary summary = ClassFiles.summarize(bytes);
+    assertEquals(ClassFilesTest.class.getName(), summary.getName());
+    assertTrue(summary.hasTests());
+    assertTrue(summary.isConcrete());
+    assertTrue(summary.isPublic());
+    assertFalse(summary.hasMain());
+  }
+}